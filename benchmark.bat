@@ -0,0 +1,3 @@
+if not exist build mkdir build
+javac -d build -cp src src/main/Benchmark.java
+java -classpath build main.Benchmark %*
\ No newline at end of file
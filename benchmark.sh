@@ -0,0 +1,7 @@
+#!/bin/sh
+
+mkdir -p build
+
+javac -d build -cp src src/main/Benchmark.java
+
+java -classpath build main.Benchmark "$@"
@@ -0,0 +1,24 @@
+package solver;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH entry point with the GC profiler always on, so every run reports
+ * allocation rates next to timings. Accepts the usual JMH command line.
+ *
+ * Run from the repository root so the benchmarks can find maps/:
+ *   java -jar benchmarks/target/benchmarks.jar [regexp] [jmh options]
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
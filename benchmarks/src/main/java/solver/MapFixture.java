@@ -0,0 +1,86 @@
+package solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import reader.FileReader;
+import reader.MapData;
+
+/**
+ * A map from maps/ prepared for benchmarking: its board, an expander, and a
+ * fixed sample of reachable nodes to feed the hot paths.
+ */
+class MapFixture {
+  static final int SAMPLE_SIZE = 256;
+
+  final int width, height;
+  final char[][] mapData, itemsData;
+  final Board board;
+  final Expander expander;
+  final Node[] samples;
+
+  MapFixture(String map, SolverOptions options) {
+    MapData data = new FileReader().readFile(map);
+    if (data == null) {
+      throw new IllegalStateException("Cannot read maps/" + map + ".txt; run from the repository root");
+    }
+    width = data.columns;
+    height = data.rows;
+    mapData = data.getMapLayer();
+    itemsData = data.getItemsLayer();
+    board = new Board(width, height, mapData);
+    expander = new Expander(board, options);
+    expander.prepare(new CancellationToken(0));
+    samples = sample();
+  }
+
+  /**
+   * The first SAMPLE_SIZE distinct nodes in breadth-first order from the start.
+   */
+  private Node[] sample() {
+    List<Node> nodes = new ArrayList<>();
+    Set<Node> seen = new HashSet<>();
+    ArrayDeque<Node> queue = new ArrayDeque<>();
+    List<Node> neighbors = new ArrayList<>();
+    Node startNode = expander.initializeStartNode(itemsData);
+    queue.add(startNode);
+    seen.add(startNode);
+    while (!queue.isEmpty() && nodes.size() < SAMPLE_SIZE) {
+      Node node = queue.poll();
+      nodes.add(node);
+      expander.expand(node, neighbors);
+      for (Node neighbor : neighbors) {
+        if (seen.add(neighbor)) {
+          queue.add(neighbor);
+        }
+      }
+    }
+    return nodes.toArray(new Node[0]);
+  }
+
+  /**
+   * A goal node with its full parent chain, found by a plain A*.
+   */
+  Node solvedNode() {
+    PriorityQueue<Node> queue = new PriorityQueue<>(Node.BEST_FIRST);
+    Set<Node> seen = new HashSet<>();
+    List<Node> neighbors = new ArrayList<>();
+    queue.add(expander.initializeStartNode(itemsData));
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      if (expander.isGoalState(node)) {
+        return node;
+      }
+      expander.expand(node, neighbors);
+      for (Node neighbor : neighbors) {
+        if (seen.add(neighbor)) {
+          queue.add(neighbor);
+        }
+      }
+    }
+    throw new IllegalStateException("Benchmark map has no solution");
+  }
+}
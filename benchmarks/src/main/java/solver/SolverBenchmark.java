@@ -0,0 +1,161 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of the solver on fixed maps. Per-node benchmarks cycle through a
+ * sample of reachable nodes so branch predictors cannot memorize one state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+  @State(Scope.Thread)
+  public static class NodeState {
+    @Param({ "fourboxes2", "fiveboxes3", "original1" })
+    public String map;
+
+    @Param({ "PUSHES", "MOVES" })
+    public SolverOptions.SearchMode mode;
+
+    MapFixture fixture;
+    Node[] copies;
+    List<Node> neighbors = new ArrayList<>(16);
+    int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      SolverOptions options = new SolverOptions();
+      options.mode = mode;
+      fixture = new MapFixture(map, options);
+      copies = new Node[fixture.samples.length];
+      for (int i = 0; i < copies.length; i++) {
+        Node node = fixture.samples[i];
+        copies[i] = new Node(node.crates.clone(), node.player, node.region, node.hash);
+      }
+    }
+
+    int nextIndex() {
+      next = (next + 1) % fixture.samples.length;
+      return next;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class HeuristicState {
+    @Param({ "fiveboxes3", "original1" })
+    public String map;
+
+    @Param({ "MANHATTAN", "PUSH_DISTANCE", "MATCHING" })
+    public SolverOptions.HeuristicType heuristic;
+
+    MapFixture fixture;
+    int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      SolverOptions options = new SolverOptions();
+      options.heuristic = heuristic;
+      fixture = new MapFixture(map, options);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class PathState {
+    @Param({ "fiveboxes3", "original1" })
+    public String map;
+
+    MapFixture fixture;
+    Node goal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      fixture = new MapFixture(map, new SolverOptions());
+      goal = fixture.solvedNode();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class SolveState {
+    @Param({ "twoboxes1", "fourboxes2", "fiveboxes3", "original1" })
+    public String map;
+
+    @Param({ "A_STAR", "GREEDY", "BIDIRECTIONAL" })
+    public SolverOptions.Strategy strategy;
+
+    MapFixture fixture;
+    SolverOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      options = new SolverOptions();
+      options.strategy = strategy;
+      options.portfolio = false;
+      fixture = new MapFixture(map, options);
+    }
+  }
+
+  // getNeighbors in MOVES mode, getPushes in PUSHES mode
+  @Benchmark
+  public List<Node> expand(NodeState state) {
+    state.fixture.expander.expand(state.fixture.samples[state.nextIndex()], state.neighbors);
+    return state.neighbors;
+  }
+
+  @Benchmark
+  public int heuristic(HeuristicState state) {
+    Node[] samples = state.fixture.samples;
+    state.next = (state.next + 1) % samples.length;
+    return state.fixture.expander.heuristic.estimate(samples[state.next].crates);
+  }
+
+  @Benchmark
+  public int nodeHashCode(NodeState state) {
+    return state.fixture.samples[state.nextIndex()].hashCode();
+  }
+
+  @Benchmark
+  public boolean nodeEquals(NodeState state) {
+    int i = state.nextIndex();
+    return state.fixture.samples[i].equals(state.copies[i]);
+  }
+
+  @Benchmark
+  public boolean isGoalState(NodeState state) {
+    return state.fixture.expander.isGoalState(state.fixture.samples[state.nextIndex()]);
+  }
+
+  @Benchmark
+  public String reconstructPath(PathState state) {
+    return state.fixture.expander.reconstructPath(state.goal);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 10)
+  public void solveSokobanPuzzle(SolveState state, Blackhole blackhole) {
+    MapFixture fixture = state.fixture;
+    SokoBot sokoBot = new SokoBot(state.options);
+    blackhole.consume(sokoBot.solve(fixture.width, fixture.height, fixture.mapData, fixture.itemsData));
+  }
+}
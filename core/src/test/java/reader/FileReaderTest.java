@@ -0,0 +1,129 @@
+package reader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileReaderTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void collectionWithBothTitleStyles() throws IOException {
+    List<MapData> levels = read("levels.sok",
+        "; First",
+        "",
+        "#####",
+        "#@$.#",
+        "#####",
+        "",
+        "-#####",
+        "_#.$@#",
+        "-#####",
+        "Title: Second",
+        "Author: someone",
+        "",
+        "#####",
+        "#@$.",
+        "#####");
+    assertEquals(3, levels.size());
+    assertEquals("First", levels.get(0).title);
+    assertEquals("Second", levels.get(1).title);
+    assertNull(levels.get(2).title);
+
+    MapData second = levels.get(1);
+    assertEquals(3, second.rows);
+    assertEquals(6, second.columns);
+    // '-' and '_' are floor
+    assertArrayEquals(" #.$@#".toCharArray(), second.tiles[1]);
+    // Short rows are padded with floor to the widest one
+    assertArrayEquals("#@$. ".toCharArray(), levels.get(2).tiles[1]);
+  }
+
+  @Test
+  void crlfLinesAndIndentedRows() throws IOException {
+    List<MapData> levels = read("level.xsb", "  #####\r", "  #@$.#\r", "  #####\r");
+    assertEquals(1, levels.size());
+    assertEquals(7, levels.get(0).columns);
+    assertArrayEquals("  #@$.#".toCharArray(), levels.get(0).tiles[1]);
+  }
+
+  @Test
+  void utf8TitlesAndByteOrderMark() throws IOException {
+    List<MapData> levels = read("levels.sok",
+        "\uFEFF#####",
+        "#@$.#",
+        "#####",
+        "Title: Größe — 大",
+        "",
+        "; Ærø",
+        "#####",
+        "#.$@#",
+        "#####");
+    assertEquals(2, levels.size());
+    assertEquals("Größe — 大", levels.get(0).title);
+    assertEquals("Ærø", levels.get(1).title);
+  }
+
+  @Test
+  void malformedBytesInABoardAreAnUnknownTile() throws IOException {
+    File file = directory.resolve("bad.sok").toFile();
+    byte[] row = { '#', '@', '$', (byte) 0xff, '.', '#' };
+    Files.write(file.toPath(), concat("######\n".getBytes(StandardCharsets.US_ASCII), row,
+        "\n######\n".getBytes(StandardCharsets.US_ASCII)));
+    MapFormatException ex = assertThrows(MapFormatException.class, () -> new FileReader().readCollection(file));
+    assertEquals(2, ex.getLine());
+  }
+
+  @Test
+  void unplayableLevelsReportTheirLine() {
+    // A bad tile is reported on its own line, everything else where the level starts
+    assertLine(4, "unknown tile", "; one", "", "#####", "#@$x#", "#####");
+    assertLine(2, "one player", "", "#####", "#@$.#", "#@  #", "#####");
+    assertLine(1, "crates", "#####", "#@$$#", "#.  #", "#####");
+    String wide = "#".repeat(200);
+    String[] huge = new String[200];
+    huge[0] = wide;
+    for (int i = 1; i < huge.length; i++) {
+      huge[i] = i == 1 ? "#@$." + " ".repeat(195) + "#" : wide;
+    }
+    assertLine(1, "too big", huge);
+  }
+
+  private void assertLine(int line, String message, String... lines) {
+    MapFormatException ex = assertThrows(MapFormatException.class, () -> read("bad.sok", lines));
+    assertEquals(line, ex.getLine());
+    assertTrue(ex.getMessage().contains(message), ex.getMessage());
+  }
+
+  private List<MapData> read(String name, String... lines) throws IOException {
+    File file = directory.resolve(name).toFile();
+    Files.write(file.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    return new FileReader().readCollection(file);
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    int length = 0;
+    for (byte[] part : parts) {
+      length += part.length;
+    }
+    byte[] bytes = new byte[length];
+    int at = 0;
+    for (byte[] part : parts) {
+      System.arraycopy(part, 0, bytes, at, part.length);
+      at += part.length;
+    }
+    return bytes;
+  }
+}
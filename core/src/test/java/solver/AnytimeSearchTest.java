@@ -0,0 +1,98 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import reader.FileReader;
+import reader.MapData;
+
+class AnytimeSearchTest {
+  // The first pass solves it within about 900 polls of the token, and later passes improve on that
+  private static final String LEVEL = "original1";
+
+  @Test
+  void finishedSearchIsSolved() {
+    SolverResult result = solve(options(), new CancellationToken(0));
+    assertEquals(SolverResult.Status.SOLVED, result.getStatus());
+    assertTrue(result.isComplete());
+    assertTrue(isSolution(result.getMoves()));
+  }
+
+  @Test
+  void stoppedSearchKeepsItsSolution() {
+    SolverResult result = solve(options(), cancelAfter(1500));
+    assertEquals(SolverResult.Status.CANCELLED, result.getStatus());
+    assertFalse(result.isSolved());
+    assertTrue(result.isComplete());
+    assertTrue(isSolution(result.getMoves()));
+  }
+
+  @Test
+  void fullFirstPassFallsBackToIdaStar() {
+    SolverOptions options = options();
+    options.maxStates = 50;
+    SolverResult result = solve(options, new CancellationToken(0));
+    assertEquals(SolverResult.Status.SOLVED, result.getStatus());
+    assertTrue(isSolution(result.getMoves()));
+  }
+
+  @Test
+  void fullFirstPassKeepsItsPartialLine() {
+    SolverOptions options = options();
+    options.maxStates = 50;
+    SolverResult result = solve(options, cancelAfter(500));
+    assertEquals(SolverResult.Status.CANCELLED, result.getStatus());
+    assertFalse(result.isComplete());
+    assertFalse(result.getMoves().isEmpty(), "no partial line");
+
+    Expander expander = expander();
+    Node startNode = expander.initializeStartNode(level().getItemsLayer());
+    short[] crates = expander.replay(startNode, result.getMoves());
+    assertNotNull(crates, "illegal partial line");
+    assertTrue(expander.heuristic.estimate(crates) < startNode.estimate, "partial line gets no closer");
+  }
+
+  private static SolverOptions options() {
+    SolverOptions options = new SolverOptions();
+    options.strategy = SolverOptions.Strategy.ANYTIME;
+    options.portfolio = false;
+    return options;
+  }
+
+  // Cancels itself once polled more than polls times; searches poll once per expansion
+  private static CancellationToken cancelAfter(int polls) {
+    return new CancellationToken(0) {
+      private int left = polls;
+
+      @Override
+      public boolean isCancelled() {
+        return --left < 0 || super.isCancelled();
+      }
+    };
+  }
+
+  private static SolverResult solve(SolverOptions options, CancellationToken token) {
+    MapData level = level();
+    return new SokoBot(options).solve(level.columns, level.rows, level.getMapLayer(), level.getItemsLayer(), token,
+        new SearchMetrics());
+  }
+
+  private static boolean isSolution(String moves) {
+    Expander expander = expander();
+    return expander.isSolution(expander.initializeStartNode(level().getItemsLayer()), moves);
+  }
+
+  private static Expander expander() {
+    MapData level = level();
+    Expander expander = new Expander(new Board(level.columns, level.rows, level.getMapLayer()), options());
+    expander.prepare(new CancellationToken(0));
+    return expander;
+  }
+
+  private static MapData level() {
+    return new FileReader().readFile(LEVEL);
+  }
+}
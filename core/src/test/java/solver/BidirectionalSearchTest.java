@@ -0,0 +1,61 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import reader.FileReader;
+import reader.MapData;
+
+class BidirectionalSearchTest {
+  // original2 is left out: neither side gets there in reasonable time
+  private static final String[] LEVELS = {
+    "twoboxes1", "twoboxes2", "twoboxes3", "threeboxes1", "threeboxes2", "threeboxes3",
+    "fourboxes1", "fourboxes2", "fourboxes3", "fiveboxes1", "fiveboxes2", "fiveboxes3",
+    "original1", "original3"
+  };
+
+  @Test
+  void joinedPathReplaysToTheGoal() {
+    for (String name : LEVELS) {
+      MapData level = new FileReader().readFile(name);
+      Board board = new Board(level.columns, level.rows, level.getMapLayer());
+      SolverOptions options = new SolverOptions();
+      SolverResult result = new BidirectionalSearch(board, options, new SearchMetrics())
+          .solve(level.getItemsLayer(), new CancellationToken(0));
+      assertEquals(SolverResult.Status.SOLVED, result.getStatus(), name);
+
+      Expander expander = new Expander(board, options);
+      expander.prepare(new CancellationToken(0));
+      Node startNode = expander.initializeStartNode(level.getItemsLayer());
+      assertTrue(expander.isSolution(startNode, result.getMoves()), name + ": " + result.getMoves());
+    }
+  }
+
+  @Test
+  void metAtTheStartWhenAlreadySolved() {
+    MapData level = new FileReader().readFile("twoboxes1");
+    char[][] items = level.getItemsLayer();
+    char[][] map = level.getMapLayer();
+    // Put every crate on a goal, leaving the player where it is
+    for (int y = 0; y < level.rows; y++) {
+      for (int x = 0; x < level.columns; x++) {
+        if (items[y][x] == '$') {
+          items[y][x] = ' ';
+        }
+      }
+    }
+    for (int y = 0; y < level.rows; y++) {
+      for (int x = 0; x < level.columns; x++) {
+        if (map[y][x] == '.' && items[y][x] != '@') {
+          items[y][x] = '$';
+        }
+      }
+    }
+    Board board = new Board(level.columns, level.rows, map);
+    SolverResult result = new BidirectionalSearch(board, new SolverOptions(), new SearchMetrics())
+        .solve(items, new CancellationToken(0));
+    assertEquals(SolverResult.Status.SOLVED, result.getStatus());
+    assertEquals("", result.getMoves());
+  }
+}
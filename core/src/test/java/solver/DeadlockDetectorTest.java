@@ -0,0 +1,111 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DeadlockDetectorTest {
+  @Test
+  void pairAlongAWallIsFrozen() {
+    String[] rows = {
+      "#######",
+      "#  $$ #",
+      "#     #",
+      "# @ ..#",
+      "#######",
+    };
+    assertTrue(isDeadlocked(rows, 4, 1));
+  }
+
+  @Test
+  void frozenPairOnGoalsIsFine() {
+    String[] rows = {
+      "#######",
+      "#  ** #",
+      "#     #",
+      "# @   #",
+      "#######",
+    };
+    assertFalse(isDeadlocked(rows, 4, 1));
+  }
+
+  @Test
+  void pairInTheOpenCanMove() {
+    String[] rows = {
+      "#######",
+      "#     #",
+      "#  $$ #",
+      "# @ ..#",
+      "#######",
+    };
+    assertFalse(isDeadlocked(rows, 4, 2));
+  }
+
+  @Test
+  void squareOfCratesIsBlocked() {
+    String[] rows = {
+      "#######",
+      "#     #",
+      "# $$ .#",
+      "# $$..#",
+      "#@   .#",
+      "#######",
+    };
+    assertTrue(isDeadlocked(rows, 3, 3));
+  }
+
+  @Test
+  void frozenCrateSealsOffAnEmptyGoal() {
+    // The crate was pushed right onto the goal in the bend, closing the corridor below
+    String[] rows = {
+      "#####",
+      "# @*#",
+      "### #",
+      "### #",
+      "###.#",
+      "#####",
+    };
+    assertTrue(isCorralDeadlocked(rows, 3, 1));
+  }
+
+  @Test
+  void sealedOffCorridorWithNothingToDoIsFine() {
+    String[] rows = {
+      "#####",
+      "# @*#",
+      "### #",
+      "### #",
+      "### #",
+      "#####",
+    };
+    assertFalse(isCorralDeadlocked(rows, 3, 1));
+  }
+
+  @Test
+  void movableBorderCrateIsNoCorralDeadlock() {
+    // The player can still push the crate down the corridor onto the goal
+    String[] rows = {
+      "#####",
+      "#  @#",
+      "## $#",
+      "## ##",
+      "##.##",
+      "#####",
+    };
+    assertFalse(isCorralDeadlocked(rows, 3, 2));
+  }
+
+  private static boolean isDeadlocked(String[] rows, int x, int y) {
+    Board board = Levels.board(rows);
+    return new DeadlockDetector(board, 16).isDeadlocked(Levels.crates(board, rows), board.cell(x, y));
+  }
+
+  private static boolean isCorralDeadlocked(String[] rows, int x, int y) {
+    Board board = Levels.board(rows);
+    short[] crates = Levels.crates(board, rows);
+    PlayerReach reach = new PlayerReach(board);
+    reach.fill(crates, Levels.player(board, rows));
+    return new DeadlockDetector(board, 16).isCorralDeadlocked(crates, board.cell(x, y), reach);
+  }
+}
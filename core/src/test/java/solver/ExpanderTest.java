@@ -0,0 +1,66 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ExpanderTest {
+  @Test
+  void tunnelPushRunsOnToTheGoal() {
+    String[] rows = {
+      "##########",
+      "#@$     .#",
+      "##########",
+    };
+    Node push = onlyPush(rows);
+    assertEquals(6, push.pushes);
+    assertArrayEquals(new short[] { (short) Levels.board(rows).cell(8, 1) }, push.crates);
+  }
+
+  @Test
+  void tunnelPushStopsWhereTheCorridorOpens() {
+    String[] rows = {
+      "##########",
+      "#####  ###",
+      "#@$      #",
+      "#####  ###",
+      "#####.####",
+      "##########",
+    };
+    Node push = onlyPush(rows);
+    assertEquals(3, push.pushes);
+    assertArrayEquals(new short[] { (short) Levels.board(rows).cell(5, 2) }, push.crates);
+  }
+
+  @Test
+  void tunnelPushReplaysAsSinglePushes() {
+    String[] rows = {
+      "##########",
+      "#@$     .#",
+      "##########",
+    };
+    Board board = Levels.board(rows);
+    Expander expander = expander(board);
+    Node push = onlyPush(rows);
+    assertEquals("rrrrrr", expander.reconstructPath(push));
+  }
+
+  private static Node onlyPush(String[] rows) {
+    Board board = Levels.board(rows);
+    Expander expander = expander(board);
+    Node startNode = expander.initializeStartNode(Levels.items(rows));
+    List<Node> neighbors = new ArrayList<>();
+    expander.expand(startNode, neighbors);
+    assertEquals(1, neighbors.size());
+    return neighbors.get(0);
+  }
+
+  private static Expander expander(Board board) {
+    Expander expander = new Expander(board, new SolverOptions());
+    expander.prepare(new CancellationToken(0));
+    return expander;
+  }
+}
@@ -0,0 +1,65 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class GoalRoomTest {
+  @Test
+  void deadEndCorridorIsFilledFromTheBack() {
+    String[] rows = {
+      "##########",
+      "#@       #",
+      "#  $  $  #",
+      "#### #####",
+      "#### #####",
+      "####.#####",
+      "####.#####",
+      "##########",
+    };
+    Board board = Levels.board(rows);
+    GoalRoom room = GoalRoom.find(board, new CancellationToken(0));
+    assertNotNull(room);
+    // The smallest room: just the two goals, entered from the corridor cell above them
+    assertEquals(board.cell(4, 4), room.entrance);
+    assertTrue(room.inside[board.cell(4, 5)] && room.inside[board.cell(4, 6)]);
+    assertArrayEquals(new int[] { board.cell(4, 6), board.cell(4, 5) }, room.order);
+    // A crate pushed down into the entrance goes straight on to the back goal
+    assertEquals("d", room.fills[0][1].substring(0, 1));
+    assertEquals(2, room.fillPushes[0][1]);
+  }
+
+  @Test
+  void levelWithoutACutCellHasNoRoom() {
+    // The spaces left of the level are floor too, but no cell cuts the goals off from anything reachable
+    String[] rows = {
+      "   #######",
+      "   #@    #",
+      "####. $ .#",
+      "#  #  $  #",
+      "##########",
+    };
+    assertNull(GoalRoom.find(Levels.board(rows), new CancellationToken(0)));
+  }
+
+  @Test
+  void cancelledTokenPlansNothing() {
+    String[] rows = {
+      "##########",
+      "#@       #",
+      "#  $  $  #",
+      "#### #####",
+      "#### #####",
+      "####.#####",
+      "####.#####",
+      "##########",
+    };
+    CancellationToken token = new CancellationToken(0);
+    token.cancel();
+    assertNull(GoalRoom.find(Levels.board(rows), token));
+  }
+}
@@ -0,0 +1,136 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import reader.FileReader;
+import reader.MapData;
+
+/**
+ * Boards for the tests: every level in maps/, plus an open one wider than a
+ * bitboard word, and random crate layouts on them.
+ */
+final class Levels {
+  private Levels() {
+  }
+
+  static List<Board> boards() throws IOException {
+    List<Board> boards = new ArrayList<>();
+    File[] files = new File("maps").listFiles((directory, name) -> name.endsWith(".txt"));
+    Arrays.sort(files);
+    for (File file : files) {
+      for (MapData level : new FileReader().readCollection(file)) {
+        boards.add(new Board(level.columns, level.rows, level.getMapLayer()));
+      }
+    }
+    boards.add(wide());
+    return boards;
+  }
+
+  // 90 columns, so a row is longer than a word; a few pillars and goals break up the floor
+  private static Board wide() {
+    int width = 90, height = 12;
+    char[][] map = new char[height][width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+        map[y][x] = border || (x % 7 == 3 && y % 4 == 2) ? '#' : ' ';
+      }
+    }
+    for (int i = 0; i < 6; i++) {
+      map[1 + i][10 + 13 * i] = '.';
+    }
+    return new Board(width, height, map);
+  }
+
+  /**
+   * A board drawn as rows of level text, all the same length. Crates and
+   * the player are left off; see crates and player.
+   */
+  static Board board(String... rows) {
+    char[][] map = new char[rows.length][];
+    for (int y = 0; y < rows.length; y++) {
+      map[y] = rows[y].toCharArray();
+      for (int x = 0; x < map[y].length; x++) {
+        char tile = map[y][x];
+        map[y][x] = tile == '#' ? '#' : tile == '.' || tile == '*' || tile == '+' ? '.' : ' ';
+      }
+    }
+    return new Board(rows[0].length(), rows.length, map);
+  }
+
+  // The crate cells drawn in rows, in ascending order
+  static short[] crates(Board board, String... rows) {
+    List<Integer> cells = new ArrayList<>();
+    for (int y = 0; y < rows.length; y++) {
+      for (int x = 0; x < rows[y].length(); x++) {
+        char tile = rows[y].charAt(x);
+        if (tile == '$' || tile == '*') {
+          cells.add(board.cell(x, y));
+        }
+      }
+    }
+    short[] crates = new short[cells.size()];
+    for (int i = 0; i < crates.length; i++) {
+      crates[i] = (short) (int) cells.get(i);
+    }
+    Arrays.sort(crates);
+    return crates;
+  }
+
+  // The items layer of rows, as Expander.initializeStartNode takes it
+  static char[][] items(String... rows) {
+    char[][] items = new char[rows.length][];
+    for (int y = 0; y < rows.length; y++) {
+      items[y] = rows[y].toCharArray();
+      for (int x = 0; x < items[y].length; x++) {
+        char tile = items[y][x];
+        items[y][x] = tile == '$' || tile == '*' ? '$' : tile == '@' || tile == '+' ? '@' : ' ';
+      }
+    }
+    return items;
+  }
+
+  static int player(Board board, String... rows) {
+    for (int y = 0; y < rows.length; y++) {
+      for (int x = 0; x < rows[y].length(); x++) {
+        char tile = rows[y].charAt(x);
+        if (tile == '@' || tile == '+') {
+          return board.cell(x, y);
+        }
+      }
+    }
+    throw new IllegalArgumentException("no player");
+  }
+
+  static List<Integer> floor(Board board) {
+    List<Integer> cells = new ArrayList<>();
+    for (int cell = 0; cell < board.size; cell++) {
+      if (!board.walls[cell]) {
+        cells.add(cell);
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * count distinct floor cells in ascending order, all of them off the dead
+   * squares when alive is set.
+   */
+  static short[] crates(Board board, Random random, int count, boolean alive) {
+    List<Integer> cells = floor(board);
+    if (alive) {
+      cells.removeIf(board::isDead);
+    }
+    count = Math.min(count, cells.size());
+    short[] crates = new short[count];
+    for (int i = 0; i < count; i++) {
+      crates[i] = (short) (int) cells.remove(random.nextInt(cells.size()));
+    }
+    Arrays.sort(crates);
+    return crates;
+  }
+}
@@ -0,0 +1,36 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MatchingHeuristicTest {
+  private static final int PARENTS = 100;
+
+  @Test
+  void incrementalUpdateMatchesFullSolve() throws Exception {
+    Random random = new Random(11);
+    for (Board board : Levels.boards()) {
+      MatchingHeuristic incremental = new MatchingHeuristic(board);
+      MatchingHeuristic full = new MatchingHeuristic(board);
+      List<Integer> floor = Levels.floor(board);
+      for (int n = 0; n < PARENTS; n++) {
+        short[] parent = Levels.crates(board, random, board.goalCells.length, true);
+        Node node = new Node(parent, 0, 0, 0);
+        // Several children per parent, so later ones start from the cached parent solution
+        for (int k = 0; k < 6; k++) {
+          int index = random.nextInt(parent.length);
+          int cell = floor.get(random.nextInt(floor.size()));
+          if (node.hasCrate(cell)) {
+            continue;
+          }
+          short[] child = node.moveCrate(index, cell);
+          assertEquals(full.estimate(child), incremental.estimate(parent, index, cell, child),
+              "moving crate " + index + " to " + cell);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class NodeArenaTest {
+  // Enough for several table rehashes and more than one block of records
+  private static final int STATES = 150_000;
+  private static final int CRATES = 5;
+
+  @TempDir
+  File spill;
+
+  @ParameterizedTest
+  @EnumSource(SolverOptions.StateStorage.class)
+  void findReturnsWhatAddStoredAcrossRehashes(SolverOptions.StateStorage storage) {
+    SolverOptions options = new SolverOptions();
+    options.stateStorage = storage;
+    options.spillDirectory = spill;
+    NodeArena arena = new NodeArena(CRATES, options);
+    Node[] nodes = new Node[STATES];
+    for (int i = 0; i < STATES; i++) {
+      nodes[i] = node(i);
+      assertEquals(-1, arena.find(nodes[i]));
+      assertEquals(i, arena.add(nodes[i], i - 1));
+    }
+
+    assertEquals(STATES, arena.size());
+    for (int i = 0; i < STATES; i++) {
+      int index = arena.find(nodes[i]);
+      assertEquals(i, index);
+      Node stored = arena.node(index);
+      assertArrayEquals(nodes[i].crates, stored.crates);
+      assertEquals(nodes[i].player, stored.player);
+      assertEquals(nodes[i].region, stored.region);
+      assertEquals(nodes[i].hash, stored.hash);
+      assertEquals(nodes[i].cost, stored.cost);
+      assertEquals(nodes[i].estimate, stored.estimate);
+      assertEquals(nodes[i].direction, stored.direction);
+    }
+    // Same crates in another region is another state
+    Node state = node(42);
+    Node elsewhere = new Node(state.crates, state.player, state.region + 1, state.hash);
+    assertEquals(-1, arena.find(elsewhere));
+    arena.clear();
+  }
+
+  @Test
+  void updateKeepsTheStateFindableAndReopensIt() {
+    NodeArena arena = new NodeArena(CRATES, new SolverOptions());
+    for (int i = 0; i < 5000; i++) {
+      arena.add(node(i), i - 1);
+    }
+    arena.close(123);
+    assertTrue(arena.isClosed(123));
+    Node state = node(123);
+    Node cheaper = new Node(state.crates, state.player + 1, state.region, state.hash);
+    cheaper.cost = 1;
+    arena.update(123, cheaper, 7);
+    assertFalse(arena.isClosed(123));
+    assertEquals(123, arena.find(node(123)));
+    assertEquals(1, arena.cost(123));
+    assertEquals(cheaper.player, arena.node(123).player);
+    assertEquals(node(7).player, arena.path(123).parent.player);
+  }
+
+  // State i: distinct crates, and a hash shared by three states so probing is exercised too
+  @Test
+  void recordBlockTooBigForABufferIsRejected() {
+    // 34 + 2 * 16400 bytes per record, times 2^16 records, is past 2 GB
+    assertThrows(IllegalArgumentException.class, () -> new NodeArena(16_400, new SolverOptions()));
+  }
+
+  private static Node node(int i) {
+    Random random = new Random(i);
+    short[] crates = new short[CRATES];
+    for (int c = 0; c < CRATES; c++) {
+      crates[c] = (short) (c * 6000 + random.nextInt(6000));
+    }
+    Node node = new Node(crates, 1000 + i, i % 97, i / 3);
+    node.cost = i % 300;
+    node.estimate = i % 41;
+    node.direction = (byte) (i % 4);
+    return node;
+  }
+}
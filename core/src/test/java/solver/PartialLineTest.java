@@ -0,0 +1,78 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import reader.FileReader;
+import reader.MapData;
+
+/**
+ * Every strategy, stopped by its deadline on a level none of them solves in
+ * time, hands back a legal line that gets no further from the goal.
+ */
+class PartialLineTest {
+  // Not solved by any strategy within seconds
+  private static final String LEVEL = "original2";
+  private static final long LIMIT_MILLIS = 500;
+
+  @Test
+  void aStar() {
+    assertPartial(options(SolverOptions.Strategy.A_STAR));
+  }
+
+  @Test
+  void idaStar() {
+    assertPartial(options(SolverOptions.Strategy.IDA_STAR));
+  }
+
+  @Test
+  void anytime() {
+    assertPartial(options(SolverOptions.Strategy.ANYTIME));
+  }
+
+  @Test
+  void bidirectional() {
+    assertPartial(options(SolverOptions.Strategy.BIDIRECTIONAL));
+  }
+
+  @Test
+  void parallel() {
+    SolverOptions options = options(SolverOptions.Strategy.A_STAR);
+    options.threads = 2;
+    assertPartial(options);
+  }
+
+  @Test
+  void portfolio() {
+    SolverOptions options = options(SolverOptions.Strategy.A_STAR);
+    options.portfolio = true;
+    assertPartial(options);
+  }
+
+  private static SolverOptions options(SolverOptions.Strategy strategy) {
+    SolverOptions options = new SolverOptions();
+    options.strategy = strategy;
+    options.portfolio = false;
+    options.timeLimitMillis = LIMIT_MILLIS;
+    return options;
+  }
+
+  private static void assertPartial(SolverOptions options) {
+    MapData level = new FileReader().readFile(LEVEL);
+    char[][] items = level.getItemsLayer();
+    SolverResult result = new SokoBot(options).solve(level.columns, level.rows, level.getMapLayer(), items);
+    assertEquals(SolverResult.Status.TIMED_OUT, result.getStatus());
+    assertFalse(result.getMoves().isEmpty(), "no partial line");
+
+    Board board = new Board(level.columns, level.rows, level.getMapLayer());
+    Expander expander = new Expander(board, options);
+    expander.prepare(new CancellationToken(0));
+    Node startNode = expander.initializeStartNode(items);
+    short[] crates = expander.replay(startNode, result.getMoves());
+    assertNotNull(crates, "illegal partial line");
+    assertTrue(expander.heuristic.estimate(crates) <= startNode.estimate, "partial line leads away from the goal");
+  }
+}
@@ -0,0 +1,48 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PatternDatabaseHeuristicTest {
+  private static final int LAYOUTS = 50;
+
+  @Test
+  void neverBelowTheMatching() throws Exception {
+    Random random = new Random(5);
+    for (Board board : Levels.boards()) {
+      PatternDatabase patterns = PatternDatabase.forBoard(board, 2, null, true);
+      PatternDatabaseHeuristic heuristic = new PatternDatabaseHeuristic(board, patterns);
+      MatchingHeuristic matching = new MatchingHeuristic(board);
+      for (int n = 0; n < LAYOUTS; n++) {
+        short[] crates = Levels.crates(board, random, board.goalCells.length, true);
+        int bound = matching.estimate(crates);
+        int estimate = heuristic.estimate(crates);
+        assertTrue(bound == Heuristic.DEAD ? estimate == Heuristic.DEAD : estimate >= bound,
+            estimate + " below matching " + bound);
+      }
+    }
+  }
+
+  @Test
+  void sizeOutOfRangeIsRejected() throws Exception {
+    Board board = Levels.boards().get(0);
+    assertThrows(IllegalArgumentException.class, () -> PatternDatabase.forBoard(board, 0, null, true));
+    assertThrows(IllegalArgumentException.class,
+        () -> PatternDatabase.forBoard(board, PatternDatabase.MAX_SIZE + 1, null, true));
+  }
+
+  @Test
+  void missingTableFallsBackToMatchingWhenNotBuilding() throws Exception {
+    Board board = Levels.boards().get(0);
+    SolverOptions options = new SolverOptions();
+    options.heuristic = SolverOptions.HeuristicType.PATTERN_DATABASE;
+    options.buildPatterns = false;
+    assertInstanceOf(MatchingHeuristic.class, new Expander(board, options).heuristic);
+    options.buildPatterns = true;
+    assertInstanceOf(PatternDatabaseHeuristic.class, new Expander(board, options).heuristic);
+  }
+}
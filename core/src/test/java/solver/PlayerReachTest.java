@@ -0,0 +1,90 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PlayerReachTest {
+  private static final int LAYOUTS = 200;
+
+  @Test
+  void bitboardFillMatchesBreadthFirstFill() throws Exception {
+    Random random = new Random(7);
+    for (Board board : Levels.boards()) {
+      PlayerReach reach = new PlayerReach(board);
+      for (int n = 0; n < LAYOUTS; n++) {
+        short[] crates = Levels.crates(board, random, random.nextInt(board.goalCells.length + 4), false);
+        List<Integer> free = Levels.floor(board);
+        free.removeIf(cell -> Arrays.binarySearch(crates, (short) (int) cell) >= 0);
+        if (free.isEmpty()) {
+          continue;
+        }
+        int start = free.get(random.nextInt(free.size()));
+
+        boolean[] expected = breadthFirst(board, crates, start);
+        int[] cells = Arrays.stream(Levels.floor(board).toArray(new Integer[0]))
+            .mapToInt(Integer::intValue).filter(cell -> expected[cell]).toArray();
+
+        int region = reach.fill(crates, start);
+        assertEquals(cells[0], region, "region");
+        assertEquals(cells.length, reach.count(), "count");
+        assertArrayEquals(cells, Arrays.copyOf(reach.cells(), reach.count()), "cells");
+        for (int cell = 0; cell < board.size; cell++) {
+          assertEquals(expected[cell], reach.reached(cell), "cell " + cell);
+        }
+        for (int dir = 0; dir < 4; dir++) {
+          long[] pushable = reach.pushable(dir);
+          for (short crate : crates) {
+            int delta = board.deltas[dir];
+            int target = crate + delta;
+            boolean canPush = expected[crate - delta] && !board.walls[target]
+                && Arrays.binarySearch(crates, (short) target) < 0;
+            assertEquals(canPush, (pushable[crate >>> 6] & (1L << crate)) != 0, "push " + crate + " " + dir);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void walkPastACrateIsRefused() {
+    String[] rows = {
+      "#######",
+      "#@ $ .#",
+      "#######",
+    };
+    Board board = Levels.board(rows);
+    short[] crates = Levels.crates(board, rows);
+    PlayerReach reach = new PlayerReach(board);
+    int from = Levels.player(board, rows);
+    int to = board.cell(4, 1);
+    assertEquals("r", reach.walk(crates, from, board.cell(2, 1)));
+    assertNull(reach.walk(crates, from, to));
+    assertThrows(IllegalStateException.class, () -> reach.stepWalk(crates, from, to));
+  }
+
+  private static boolean[] breadthFirst(Board board, short[] crates, int start) {
+    boolean[] seen = new boolean[board.size];
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    seen[start] = true;
+    queue.add(start);
+    while (!queue.isEmpty()) {
+      int cell = queue.poll();
+      for (int delta : board.deltas) {
+        int next = cell + delta;
+        if (!seen[next] && !board.walls[next] && Arrays.binarySearch(crates, (short) next) < 0) {
+          seen[next] = true;
+          queue.add(next);
+        }
+      }
+    }
+    return seen;
+  }
+}
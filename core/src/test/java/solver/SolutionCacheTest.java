@@ -0,0 +1,164 @@
+package solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reader.FileReader;
+import reader.MapData;
+
+class SolutionCacheTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void everyOrientationFindsTheStoredSolution() throws IOException {
+    Level level = new Level("twoboxes2");
+    File file = directory.resolve("cache").toFile();
+    SolutionCache.open(file, true).store(level.width(), level.height(), level.map, level.items, level.solve());
+
+    // A copy of the file is opened afresh, so the lookups go through what was written
+    SolutionCache cache = SolutionCache.open(copy(file, "reloaded"), true);
+    for (int orientation = 0; orientation < 8; orientation++) {
+      Level turned = level.turned(orientation);
+      String moves = turned.lookup(cache);
+      assertNotNull(moves, "orientation " + orientation);
+      assertTrue(turned.isSolution(moves), "orientation " + orientation);
+    }
+  }
+
+  @Test
+  void symmetriesOffOnlyFindsTheSameOrientation() throws IOException {
+    Level level = new Level("twoboxes2");
+    File file = directory.resolve("cache").toFile();
+    SolutionCache cache = SolutionCache.open(file, false);
+    cache.store(level.width(), level.height(), level.map, level.items, level.solve());
+    assertNotNull(level.lookup(cache));
+    assertNull(level.turned(1).lookup(cache));
+  }
+
+  @Test
+  void recordCutShortIsDroppedAndAppendsResume() throws IOException {
+    Level first = new Level("twoboxes1");
+    Level second = new Level("twoboxes2");
+    File file = directory.resolve("cache").toFile();
+    SolutionCache cache = SolutionCache.open(file, true);
+    cache.store(first.width(), first.height(), first.map, first.items, first.solve());
+    long firstEnd = file.length();
+    cache.store(second.width(), second.height(), second.map, second.items, second.solve());
+
+    // A crash partway through the second record
+    File damaged = copy(file, "damaged");
+    try (RandomAccessFile raf = new RandomAccessFile(damaged, "rw")) {
+      raf.setLength(raf.length() - 3);
+    }
+    SolutionCache reopened = SolutionCache.open(damaged, true);
+    assertEquals(firstEnd, damaged.length());
+    assertNotNull(first.lookup(reopened));
+    assertNull(second.lookup(reopened));
+
+    reopened.store(second.width(), second.height(), second.map, second.items, second.solve());
+    SolutionCache repaired = SolutionCache.open(copy(damaged, "repaired"), true);
+    assertNotNull(first.lookup(repaired));
+    assertNotNull(second.lookup(repaired));
+  }
+
+  @Test
+  void foreignFileIsLeftAlone() throws IOException {
+    Level level = new Level("twoboxes1");
+    File file = directory.resolve("notes").toFile();
+    byte[] contents = "not a solution cache at all\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(file.toPath(), contents);
+
+    SolutionCache cache = SolutionCache.open(file, true);
+    cache.store(level.width(), level.height(), level.map, level.items, level.solve());
+    assertNull(level.lookup(cache));
+    assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+  }
+
+  private File copy(File file, String name) throws IOException {
+    File copy = directory.resolve(name).toFile();
+    Files.copy(file.toPath(), copy.toPath());
+    return copy;
+  }
+
+  /**
+   * A level's two layers, which can be rotated and mirrored with the same
+   * orientation bits the cache uses.
+   */
+  private static final class Level {
+    final char[][] map;
+    final char[][] items;
+
+    Level(String name) {
+      MapData level = new FileReader().readFile(name);
+      this.map = level.getMapLayer();
+      this.items = level.getItemsLayer();
+    }
+
+    private Level(char[][] map, char[][] items) {
+      this.map = map;
+      this.items = items;
+    }
+
+    int width() {
+      return map[0].length;
+    }
+
+    int height() {
+      return map.length;
+    }
+
+    String solve() {
+      SolverOptions options = new SolverOptions();
+      options.portfolio = false;
+      SolverResult result = new SokoBot(options).solve(width(), height(), map, items);
+      assertTrue(result.isSolved());
+      return result.getMoves();
+    }
+
+    String lookup(SolutionCache cache) {
+      return cache.lookup(width(), height(), map, items);
+    }
+
+    boolean isSolution(String moves) {
+      Board board = new Board(width(), height(), map);
+      Expander expander = new Expander(board, new SolverOptions());
+      expander.prepare(new CancellationToken(0));
+      return expander.isSolution(expander.initializeStartNode(items), moves);
+    }
+
+    // 1 mirrors x, 2 mirrors y, 4 then swaps the axes
+    Level turned(int orientation) {
+      return new Level(turn(map, orientation), turn(items, orientation));
+    }
+
+    private static char[][] turn(char[][] layer, int orientation) {
+      int rows = layer.length, columns = layer[0].length;
+      boolean swap = (orientation & 4) != 0;
+      char[][] turned = new char[swap ? columns : rows][swap ? rows : columns];
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < columns; x++) {
+          int toX = (orientation & 1) != 0 ? columns - 1 - x : x;
+          int toY = (orientation & 2) != 0 ? rows - 1 - y : y;
+          if (swap) {
+            turned[toX][toY] = layer[y][x];
+          } else {
+            turned[toY][toX] = layer[y][x];
+          }
+        }
+      }
+      return turned;
+    }
+  }
+}
@@ -10,17 +10,8 @@ compile_class() {
   javac "$1" -cp src
 }
 
-files_to_remove=(
-  src/gui/BotThread.class
-  src/gui/GameFrame.class
-  src/gui/GamePanel.class
-  src/main/Driver.class
-  src/reader/FileReader.class
-  src/reader/MapData.class
-  src/solver/SokoBot.class
-)
-
-remove_files "${files_to_remove[@]}"
+# Every class under src, so none compiled from an older source is picked up
+remove_files $(find src -name '*.class')
 
 compile_class src/main/Driver.java
 
@@ -0,0 +1,3 @@
+if not exist build mkdir build
+javac -d build -cp src src/main/BuildPatterns.java
+java -classpath build main.BuildPatterns %*
\ No newline at end of file
@@ -1,6 +1,9 @@
 package gui;
 
+import java.io.File;
+import solver.SearchMetrics;
 import solver.SokoBot;
+import solver.SolverOptions;
 
 public class BotThread extends Thread {
   private SokoBot sokoBot;
@@ -12,13 +15,35 @@ public class BotThread extends Thread {
   private String solution = null;
 
   public BotThread(int width, int height, char[][] mapData, char[][] itemsData) {
-    sokoBot = new SokoBot();
+    this(createSokoBot(), width, height, mapData, itemsData);
+  }
+
+  /**
+   * Solves with an existing bot, which remembers what it learned about the
+   * level from its earlier solves.
+   */
+  public BotThread(SokoBot sokoBot, int width, int height, char[][] mapData, char[][] itemsData) {
+    this.sokoBot = sokoBot;
     this.width = width;
     this.height = height;
     this.mapData = mapData;
     this.itemsData = itemsData;
   }
 
+  public static SokoBot createSokoBot() {
+    SolverOptions options = new SolverOptions();
+    options.solutionCache = new File("solutions.cache");
+    options.heuristic = SolverOptions.HeuristicType.PATTERN_DATABASE;
+    options.patternDirectory = new File("patterns");
+    // Building a table could eat most of the time limit; levels without one (see BuildPatterns) use MATCHING
+    options.buildPatterns = false;
+    // Always hold some solution, and hand back the best one a little before GamePanel gives up
+    options.strategy = SolverOptions.Strategy.ANYTIME;
+    options.portfolio = false;
+    options.timeLimitMillis = GamePanel.SOLUTION_TIME_LIMIT - 1000;
+    return new SokoBot(options);
+  }
+
   @Override
   public void run() {
     solution = sokoBot.solveSokobanPuzzle(width, height, mapData, itemsData);
@@ -27,4 +52,12 @@ public class BotThread extends Thread {
   public String getSolution() {
     return solution;
   }
+
+  public SearchMetrics getMetrics() {
+    return sokoBot.getMetrics();
+  }
+
+  public void cancel() {
+    sokoBot.cancel();
+  }
 }
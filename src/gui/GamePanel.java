@@ -14,6 +14,7 @@ import java.io.File;
 
 import javax.imageio.ImageIO;
 import reader.MapData;
+import solver.SokoBot;
 
 public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
@@ -37,6 +38,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
   private boolean freePlay = false;
   private boolean waitingForSpace = false;
+  // Set while the bot finishes a level the player started; free play resumes afterwards
+  private boolean hinting = false;
   private String solutionString = "";
   private int solutionCtr = -1;
 
@@ -44,6 +47,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
   private Font statusFont;
   private Font statusValueFont;
+  private Font metricsFont;
   private String statusString = "";
 
   private final String STATUS_WAITING_FOR_SPACE = "Push SPACE to start Bot...";
@@ -51,9 +55,10 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private final String STATUS_SOLUTION_TIMEOUT = "TIME'S UP! Bot took too long thinking...";
   private final String STATUS_PLAYING_SOLUTION = "Playing solution...";
   private final String STATUS_FINISHED_PLAYING_SOLUTION = "SOLUTION FINISHED!";
-  private final String STATUS_FREE_PLAY = "FREE PLAY MODE!";
+  private final String STATUS_FREE_PLAY = "FREE PLAY MODE! SPACE for the bot";
 
   private String solutionTimeString = "";
+  private String metricsString = "";
 
   private int progress = 0;
   private int moves = 0;
@@ -61,13 +66,14 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private int goalCount = 0;
   private int playerCount = 0;
 
+  private SokoBot sokoBot;
   private BotThread solutionThread;
   private Timer solutionTimer;
   private Timer checkForSolutionTimer;
   private long solutionStartTime;
   private long solutionEndTime;
 
-  private final int SOLUTION_TIME_LIMIT = 15000;
+  static final int SOLUTION_TIME_LIMIT = 15000;
 
   public GamePanel() {
     this.setBackground(Color.BLACK);
@@ -76,6 +82,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     this.setFocusable(true);
     this.statusFont = new Font("SansSerif", Font.BOLD, 16);
     this.statusValueFont = new Font("SansSerif", Font.PLAIN, 16);
+    this.metricsFont = new Font("Monospaced", Font.PLAIN, 12);
   }
 
   private void loadImages() {
@@ -149,6 +156,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
     rows = mapData.rows;
     columns = mapData.columns;
+    sokoBot = BotThread.createSokoBot();
 
     if (playerCount == 1 && boxCount == goalCount && boxCount > 0) {
       freePlay = false;
@@ -208,6 +216,14 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
       g.drawString("" + moves, 80, this.getHeight() - 12);
       g.drawString(progress + " / " + boxCount, 286, this.getHeight() - 12);
       g.drawString(this.solutionTimeString, this.getWidth() - 60, this.getHeight() - 12);
+
+      if (this.statusString.equals(STATUS_WAITING_FOR_SOLUTION) && !this.metricsString.isEmpty()) {
+        g.setColor(new Color(120, 180, 100));
+        g.fillRect(0, this.getHeight() - 56, this.getWidth(), 24);
+        g.setColor(Color.BLACK);
+        g.setFont(this.metricsFont);
+        g.drawString(this.metricsString, 8, this.getHeight() - 39);
+      }
     }
   }
 
@@ -306,33 +322,51 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         case KeyEvent.VK_RIGHT:
           executeMove(3);
           break;
+        case KeyEvent.VK_SPACE:
+          // Let the bot finish from wherever the player got to
+          freePlay = false;
+          hinting = true;
+          startSolution();
+          break;
       }
     } else if (waitingForSpace) {
       if (e.getKeyCode() == KeyEvent.VK_SPACE) {
         waitingForSpace = false;
-        this.statusString = STATUS_WAITING_FOR_SOLUTION;
-
-        char[][] mapDataCopy = new char[rows][columns];
-        char[][] itemsDataCopy = new char[rows][columns];
+        startSolution();
+      }
+    }
+  }
 
-        for (int i = 0; i < rows; i++) {
-          for (int j = 0; j < columns; j++) {
-            mapDataCopy[i][j] = map[i][j];
-            itemsDataCopy[i][j] = items[i][j];
-          }
-        }
+  private void startSolution() {
+    this.statusString = STATUS_WAITING_FOR_SOLUTION;
+    this.metricsString = "";
 
-        solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy);
-        solutionThread.start();
-        solutionStartTime = System.nanoTime();
-        solutionTimer = new Timer(SOLUTION_TIME_LIMIT, this);
-        solutionTimer.start();
-        checkForSolutionTimer = new Timer(30, this);
-        checkForSolutionTimer.start();
+    char[][] mapDataCopy = new char[rows][columns];
+    char[][] itemsDataCopy = new char[rows][columns];
 
-        this.repaint();
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        mapDataCopy[i][j] = map[i][j];
+        itemsDataCopy[i][j] = items[i][j];
       }
     }
+
+    solutionThread = new BotThread(sokoBot, columns, rows, mapDataCopy, itemsDataCopy);
+    solutionThread.start();
+    solutionStartTime = System.nanoTime();
+    solutionTimer = new Timer(SOLUTION_TIME_LIMIT, this);
+    solutionTimer.start();
+    checkForSolutionTimer = new Timer(30, this);
+    checkForSolutionTimer.start();
+
+    this.repaint();
+  }
+
+  private void resumeFreePlay() {
+    if (hinting) {
+      hinting = false;
+      freePlay = true;
+    }
   }
 
   @Override
@@ -364,6 +398,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
       if (this.solutionCtr >= this.solutionString.length()) {
         this.animationTimer.stop();
         this.statusString = STATUS_FINISHED_PLAYING_SOLUTION;
+        resumeFreePlay();
         this.repaint();
         return;
       }
@@ -390,6 +425,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         String solution = solutionThread.getSolution();
         this.playSolution(solution);
       }
+      this.metricsString = solutionThread.getMetrics().toString();
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
       this.repaint();
@@ -397,9 +433,11 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
       // Solution was not found
       solutionTimer.stop();
       checkForSolutionTimer.stop();
+      solutionThread.cancel();
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0);
       this.statusString = STATUS_SOLUTION_TIMEOUT;
+      resumeFreePlay();
       this.repaint();
     }
   }
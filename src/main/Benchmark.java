@@ -0,0 +1,308 @@
+package main;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import reader.FileReader;
+import reader.MapData;
+import solver.SokoBot;
+import solver.SolverOptions;
+import solver.SolverResult;
+
+/**
+ * Runs the solver headlessly over the maps directory and prints one row per
+ * map, as CSV or JSON. Levels of .sok/.xsb collections each get their own row.
+ *
+ * Usage: Benchmark [glob] [--timeout ms] [--format csv|json] [--out file]
+ *                  [--strategy name] [--heuristic name] [--threads n] [--portfolio true|false]
+ */
+public class Benchmark {
+  private static class Row {
+    String map;
+    String status;
+    boolean solved;
+    int moves;
+    int pushes;
+    long nodesExpanded;
+    double peakHeapMb;
+    long wallMillis;
+  }
+
+  public static void main(String[] args) {
+    String glob = "*";
+    long timeout = 15000;
+    String format = "csv";
+    String out = null;
+    SolverOptions options = new SolverOptions();
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--timeout":
+          timeout = Long.parseLong(args[++i]);
+          break;
+        case "--format":
+          format = args[++i];
+          break;
+        case "--out":
+          out = args[++i];
+          break;
+        case "--strategy":
+          options.strategy = SolverOptions.Strategy.valueOf(args[++i].toUpperCase());
+          break;
+        case "--heuristic":
+          options.heuristic = SolverOptions.HeuristicType.valueOf(args[++i].toUpperCase());
+          break;
+        case "--threads":
+          options.threads = Integer.parseInt(args[++i]);
+          break;
+        case "--portfolio":
+          options.portfolio = Boolean.parseBoolean(args[++i]);
+          break;
+        default:
+          glob = args[i];
+      }
+    }
+    options.timeLimitMillis = timeout;
+
+    List<Row> rows = new ArrayList<>();
+    for (Map.Entry<String, MapData> level : findMaps(glob).entrySet()) {
+      rows.add(run(level.getKey(), level.getValue(), options, timeout));
+      System.err.println("finished " + level.getKey());
+    }
+
+    PrintStream target = System.out;
+    if (out != null) {
+      try {
+        target = new PrintStream(new File(out));
+      } catch (FileNotFoundException ex) {
+        ex.printStackTrace(System.err);
+        System.exit(1);
+      }
+    }
+    if (format.equals("json")) {
+      printJson(rows, target);
+    } else {
+      printCsv(rows, target);
+    }
+    target.flush();
+    if (target != System.out) {
+      target.close();
+    }
+  }
+
+  /**
+   * The levels in maps/ matching glob, in file order, each parsed once: a
+   * .txt level under its name, a collection's levels as name#n. A file that
+   * cannot be read maps its name to null.
+   */
+  static Map<String, MapData> findMaps(String glob) {
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    Map<String, MapData> maps = new LinkedHashMap<>();
+    File[] files = new File("maps").listFiles();
+    if (files == null) {
+      return maps;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (!FileReader.isMapFile(name)) {
+        continue;
+      }
+      String map = name.substring(0, name.lastIndexOf('.'));
+      if (!matcher.matches(Paths.get(map)) && !matcher.matches(Paths.get(name))) {
+        continue;
+      }
+      try {
+        List<MapData> levels = new FileReader().readCollection(file);
+        if (levels.isEmpty()) {
+          throw new IOException(file + " has no levels");
+        }
+        if (name.endsWith(".txt")) {
+          maps.put(map, levels.get(0));
+          continue;
+        }
+        // Collections run level by level, as name#n
+        for (int level = 1; level <= levels.size(); level++) {
+          maps.put(map + "#" + level, levels.get(level - 1));
+        }
+      } catch (IOException ex) {
+        System.err.println(ex.getMessage());
+        maps.put(map, null);
+      }
+    }
+    return maps;
+  }
+
+  private static Row run(String map, MapData mapData, SolverOptions options, long timeout) {
+    Row row = new Row();
+    row.map = map;
+
+    if (mapData == null) {
+      row.status = "UNREADABLE";
+      return row;
+    }
+    char[][] mapLayer = mapData.getMapLayer();
+    char[][] itemsLayer = mapData.getItemsLayer();
+
+    SokoBot sokoBot = new SokoBot(options.copy());
+    SolverResult[] result = new SolverResult[1];
+    Thread solver = new Thread(() -> {
+      result[0] = sokoBot.solve(mapData.columns, mapData.rows, mapLayer, itemsLayer);
+    }, "benchmark-" + map);
+    solver.setDaemon(true);
+
+    System.gc();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    }
+
+    long start = System.nanoTime();
+    solver.start();
+    try {
+      // The solver watches the deadline itself; this only guards against a stuck run
+      solver.join(timeout + 5000);
+      if (solver.isAlive()) {
+        sokoBot.cancel();
+        solver.join();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    row.wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    row.peakHeapMb = peak / (1024.0 * 1024.0);
+    row.nodesExpanded = sokoBot.getNodesExpanded();
+
+    if (result[0] == null) {
+      row.status = "CRASHED";
+    } else if (result[0].isComplete()) {
+      // Also a search stopped while improving a solution it already had
+      String moves = result[0].getMoves();
+      row.moves = moves.length();
+      row.pushes = countPushes(mapLayer, itemsLayer, moves);
+      row.solved = row.pushes >= 0;
+      row.status = row.solved ? result[0].getStatus().toString() : "INVALID";
+    } else {
+      row.status = result[0].getStatus().toString();
+    }
+    return row;
+  }
+
+  /**
+   * Replays moves and returns the number of pushes, or -1 if the moves are
+   * illegal or do not leave every crate on a goal.
+   */
+  private static int countPushes(char[][] map, char[][] items, String moves) {
+    char[][] board = new char[items.length][];
+    int row = -1, column = -1;
+    for (int i = 0; i < items.length; i++) {
+      board[i] = items[i].clone();
+      for (int j = 0; j < board[i].length; j++) {
+        if (board[i][j] == '@') {
+          row = i;
+          column = j;
+        }
+      }
+    }
+
+    int pushes = 0;
+    for (char move : moves.toCharArray()) {
+      int dRow = move == 'u' ? -1 : move == 'd' ? 1 : 0;
+      int dColumn = move == 'l' ? -1 : move == 'r' ? 1 : 0;
+      int nextRow = row + dRow, nextColumn = column + dColumn;
+      if (!isFloor(map, nextRow, nextColumn)) {
+        return -1;
+      }
+      if (board[nextRow][nextColumn] == '$') {
+        int crateRow = nextRow + dRow, crateColumn = nextColumn + dColumn;
+        if (!isFloor(map, crateRow, crateColumn) || board[crateRow][crateColumn] == '$') {
+          return -1;
+        }
+        board[crateRow][crateColumn] = '$';
+        pushes++;
+      }
+      board[row][column] = ' ';
+      board[nextRow][nextColumn] = '@';
+      row = nextRow;
+      column = nextColumn;
+    }
+
+    for (int i = 0; i < board.length; i++) {
+      for (int j = 0; j < board[i].length; j++) {
+        if (board[i][j] == '$' && map[i][j] != '.') {
+          return -1;
+        }
+      }
+    }
+    return pushes;
+  }
+
+  private static boolean isFloor(char[][] map, int row, int column) {
+    return row >= 0 && row < map.length && column >= 0 && column < map[row].length
+        && map[row][column] != '#';
+  }
+
+  private static void printCsv(List<Row> rows, PrintStream out) {
+    out.println("map,status,solved,moves,pushes,nodes_expanded,peak_heap_mb,wall_ms");
+    for (Row row : rows) {
+      // Locale.ROOT keeps the decimal point from turning into a comma and splitting the column
+      out.printf(Locale.ROOT, "%s,%s,%b,%d,%d,%d,%.1f,%d%n", csv(row.map), row.status,
+          row.solved, row.moves, row.pushes, row.nodesExpanded, row.peakHeapMb, row.wallMillis);
+    }
+  }
+
+  private static void printJson(List<Row> rows, PrintStream out) {
+    out.println("[");
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      out.printf(Locale.ROOT, "  {\"map\": \"%s\", \"status\": \"%s\", \"solved\": %b, \"moves\": %d, "
+          + "\"pushes\": %d, \"nodes_expanded\": %d, \"peak_heap_mb\": %.1f, \"wall_ms\": %d}%s%n",
+          json(row.map), row.status, row.solved, row.moves, row.pushes, row.nodesExpanded,
+          row.peakHeapMb, row.wallMillis, i < rows.size() - 1 ? "," : "");
+    }
+    out.println("]");
+  }
+
+  // Map names come from file names and level titles, so they may hold separators or quotes
+  private static String csv(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  private static String json(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        escaped.append('\\').append(c);
+      } else if (c < 0x20) {
+        escaped.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,46 @@
+package main;
+
+import java.io.File;
+import java.util.Map;
+import reader.MapData;
+import solver.SokoBot;
+import solver.SolverOptions;
+
+/**
+ * Builds the pattern database for each map ahead of time, so solves with
+ * the PATTERN_DATABASE heuristic can memory-map it instead of building it.
+ *
+ * Usage: BuildPatterns [glob] [--size n] [--dir directory]
+ */
+public class BuildPatterns {
+  public static void main(String[] args) {
+    String glob = "*";
+    SolverOptions options = new SolverOptions();
+    options.heuristic = SolverOptions.HeuristicType.PATTERN_DATABASE;
+    options.patternDirectory = new File("patterns");
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--size":
+          options.patternSize = Integer.parseInt(args[++i]);
+          break;
+        case "--dir":
+          options.patternDirectory = new File(args[++i]);
+          break;
+        default:
+          glob = args[i];
+      }
+    }
+
+    for (Map.Entry<String, MapData> level : Benchmark.findMaps(glob).entrySet()) {
+      String map = level.getKey();
+      MapData mapData = level.getValue();
+      if (mapData == null) {
+        continue;
+      }
+      long start = System.nanoTime();
+      new SokoBot(options).prepare(mapData.columns, mapData.rows, mapData.getMapLayer());
+      System.out.println(map + ": " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+  }
+}
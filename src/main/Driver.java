@@ -16,6 +16,9 @@ public class Driver {
 
     FileReader fileReader = new FileReader();
     MapData mapData = fileReader.readFile(mapName);
+    if (mapData == null) {
+      System.exit(1);
+    }
 
     GameFrame gameFrame = new GameFrame(mapData);
 
@@ -1,41 +1,240 @@
 package reader;
 
 import java.io.File;
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Loads levels from maps/. A file holds one level (the .txt maps) or a whole
+ * collection in the usual .sok/XSB layout: boards separated by blank or text
+ * lines, with "; title" comments before a board or a "Title:" line after it.
+ * '-' and '_' are read as floor.
+ *
+ * Files are UTF-8, decoded in one pass straight from a buffer that is
+ * memory-mapped when they are large, and every level is sized to its own
+ * rows and checked for one player and as many crates as goals before it is
+ * returned.
+ */
 public class FileReader {
+  // Files at least this large are memory-mapped instead of read onto the heap
+  private static final long MAP_THRESHOLD = 1 << 20;
+  private static final String[] EXTENSIONS = { ".txt", ".sok", ".xsb" };
+  private static final String TILES = "#@+$*. -_";
+
+  /**
+   * The level named by keyword: a file in maps/ without its extension,
+   * optionally followed by #n for the n-th level of a collection. Returns
+   * null, after printing why, when it cannot be read.
+   */
   public MapData readFile(String keyword) {
-    int rows = 0;
-    int columns = 0;
-    char tiles[][] = new char[100][100];
-    for (int i = 0; i < 100; i++) {
-      for (int j = 0; j < 100; j++) {
-        tiles[i][j] = ' ';
-      }
+    String name = keyword;
+    int level = 1;
+    int hash = keyword.lastIndexOf('#');
+    if (hash > 0) {
+      name = keyword.substring(0, hash);
+      level = Integer.parseInt(keyword.substring(hash + 1));
     }
 
     try {
-      File file = new File("maps/" + keyword + ".txt");
-      Scanner scanner = new Scanner(file);
-      while (scanner.hasNext()) {
-        String nextLine = scanner.nextLine();
-        columns = Math.max(columns, nextLine.length());
-        for (int i = 0; i < nextLine.length(); i++) {
-          tiles[rows][i] = nextLine.charAt(i);
-        }
-        rows++;
+      File file = locate(name);
+      List<MapData> levels = readCollection(file);
+      if (level < 1 || level > levels.size()) {
+        throw new IOException(file + " has " + levels.size() + " levels, not level " + level);
       }
-      scanner.close();
+      return levels.get(level - 1);
     } catch (Exception ex) {
       ex.printStackTrace(System.out);
       return null;
     }
+  }
+
+  /**
+   * The file in maps/ for a level or collection name, trying each known
+   * extension in turn.
+   */
+  public static File locate(String name) {
+    for (String extension : EXTENSIONS) {
+      File file = new File("maps/" + name + extension);
+      if (file.isFile()) {
+        return file;
+      }
+    }
+    return new File("maps/" + name + EXTENSIONS[0]);
+  }
+
+  public static boolean isMapFile(String fileName) {
+    for (String extension : EXTENSIONS) {
+      if (fileName.endsWith(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Every level in file, in order.
+   */
+  public List<MapData> readCollection(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer buffer;
+      if (size >= MAP_THRESHOLD) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+      }
+      return parse(buffer, file.getPath());
+    }
+  }
+
+  private static List<MapData> parse(ByteBuffer buffer, String source) throws MapFormatException {
+    Collection collection = new Collection(source);
+    char[] line = new char[128];
+    int length = 0;
+    int lineNumber = 1;
+    // Bytes that are not UTF-8 become U+FFFD, which is fine in a title and an unknown tile in a board
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer chars = CharBuffer.allocate(8192);
+    boolean more = true;
+    while (more) {
+      more = decoder.decode(buffer, chars, true).isOverflow();
+      if (!more) {
+        decoder.flush(chars);
+      }
+      chars.flip();
+      while (chars.hasRemaining()) {
+        char c = chars.get();
+        if (c == '\uFEFF' && lineNumber == 1 && length == 0) {
+          // A byte order mark would otherwise hide a board row starting the file
+          continue;
+        }
+        if (c == '\n') {
+          collection.line(line, length, lineNumber++);
+          length = 0;
+        } else if (c != '\r') {
+          if (length == line.length) {
+            line = Arrays.copyOf(line, length * 2);
+          }
+          line[length++] = c;
+        }
+      }
+      chars.clear();
+    }
+    collection.line(line, length, lineNumber);
+    collection.endLevel();
+    return collection.levels;
+  }
 
-    MapData result = new MapData();
-    result.tiles = tiles;
-    result.rows = rows;
-    result.columns = columns;
+  /**
+   * Levels as they are read, one line at a time.
+   */
+  private static class Collection {
+    final String source;
+    final List<MapData> levels = new ArrayList<>();
+    private final List<String> rows = new ArrayList<>();
+    private int start;
+    private String title;
+    // Whether a level was just read, so a "Title:" line names it
+    private boolean titleOpen;
 
-    return result;
+    Collection(String source) {
+      this.source = source;
+    }
+
+    void line(char[] chars, int length, int lineNumber) throws MapFormatException {
+      while (length > 0 && Character.isWhitespace(chars[length - 1])) {
+        length--;
+      }
+      String text = new String(chars, 0, length);
+      String trimmed = text.trim();
+      int first = 0;
+      while (first < length && (chars[first] == ' ' || chars[first] == '-' || chars[first] == '_')) {
+        first++;
+      }
+
+      // Board rows start with a wall once leading floor is skipped
+      if (first < length && chars[first] == '#') {
+        for (int i = 0; i < length; i++) {
+          if (TILES.indexOf(chars[i]) < 0) {
+            throw new MapFormatException(source, lineNumber, "unknown tile '" + chars[i] + "'");
+          }
+        }
+        if (rows.isEmpty()) {
+          start = lineNumber;
+        }
+        rows.add(text.replace('-', ' ').replace('_', ' '));
+        return;
+      }
+
+      endLevel();
+      if (trimmed.startsWith(";")) {
+        title = trimmed.substring(1).trim();
+        titleOpen = false;
+      } else if (trimmed.regionMatches(true, 0, "Title:", 0, 6)) {
+        String value = trimmed.substring(6).trim();
+        if (titleOpen) {
+          levels.get(levels.size() - 1).title = value;
+          titleOpen = false;
+        } else {
+          title = value;
+        }
+      }
+    }
+
+    void endLevel() throws MapFormatException {
+      if (rows.isEmpty()) {
+        return;
+      }
+      MapData level = new MapData();
+      level.rows = rows.size();
+      for (String row : rows) {
+        level.columns = Math.max(level.columns, row.length());
+      }
+      // The solver numbers cells, border included, with shorts
+      if ((level.columns + 2L) * (level.rows + 2L) > Short.MAX_VALUE) {
+        throw new MapFormatException(source, start, level.columns + "x" + level.rows
+            + " is too big, the solver takes at most " + Short.MAX_VALUE + " cells with a border");
+      }
+      level.tiles = new char[level.rows][level.columns];
+
+      int players = 0, crates = 0, goals = 0;
+      for (int i = 0; i < level.rows; i++) {
+        String row = rows.get(i);
+        Arrays.fill(level.tiles[i], ' ');
+        row.getChars(0, row.length(), level.tiles[i], 0);
+        for (int j = 0; j < row.length(); j++) {
+          char tile = row.charAt(j);
+          players += tile == '@' || tile == '+' ? 1 : 0;
+          crates += tile == '$' || tile == '*' ? 1 : 0;
+          goals += tile == '.' || tile == '+' || tile == '*' ? 1 : 0;
+        }
+      }
+      if (players != 1) {
+        throw new MapFormatException(source, start, "expected one player, found " + players);
+      }
+      if (crates == 0 || crates != goals) {
+        throw new MapFormatException(source, start, crates + " crates for " + goals + " goals");
+      }
+
+      level.title = title;
+      levels.add(level);
+      rows.clear();
+      titleOpen = true;
+      title = null;
+    }
   }
 }
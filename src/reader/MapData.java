@@ -4,6 +4,56 @@ public class MapData {
   public char[][] tiles;
   public int rows;
   public int columns;
+  // From the level's collection file, or null
+  public String title;
+
+  /**
+   * The static layer the solver takes as mapData: walls, goals and floor.
+   */
+  public char[][] getMapLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        switch (tiles[i][j]) {
+          case '#':
+            layer[i][j] = '#';
+            break;
+          case '.':
+          case '+':
+          case '*':
+            layer[i][j] = '.';
+            break;
+          default:
+            layer[i][j] = ' ';
+        }
+      }
+    }
+    return layer;
+  }
+
+  /**
+   * The movable layer the solver takes as itemsData: the player and crates.
+   */
+  public char[][] getItemsLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        switch (tiles[i][j]) {
+          case '@':
+          case '+':
+            layer[i][j] = '@';
+            break;
+          case '$':
+          case '*':
+            layer[i][j] = '$';
+            break;
+          default:
+            layer[i][j] = ' ';
+        }
+      }
+    }
+    return layer;
+  }
 
   public void print() {
     for (int i = 0; i < rows; i++) {
@@ -0,0 +1,23 @@
+package reader;
+
+import java.io.IOException;
+
+/**
+ * A level that cannot be played: an unknown tile, no player or more than
+ * one, crates and goals that do not pair up, or a grid too big to solve.
+ */
+public class MapFormatException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final int line;
+
+  public MapFormatException(String source, int line, String message) {
+    super(source + ":" + line + ": " + message);
+    this.line = line;
+  }
+
+  // One-based line in the source file where the offending level starts
+  public int getLine() {
+    return line;
+  }
+}
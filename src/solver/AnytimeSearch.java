@@ -0,0 +1,211 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Anytime search: a weighted A* for a quick first solution, then passes with
+ * ever smaller weights down to plain A*, each pruning whatever cannot beat
+ * the best solution so far. Whenever it stops, the best solution found is
+ * the answer.
+ *
+ * High weights are no shortcut on Sokoban: they chase low estimates into
+ * regions that are deadlocked in ways the detector cannot see. So until
+ * there is a solution, each pass gets a cap on expansions that doubles from
+ * one weight to the next, and only plain A* runs uncapped.
+ *
+ * Each pass starts over rather than repairing the last one's open list as
+ * ARA* does; the pruning bound makes later passes much smaller than a plain
+ * A* from scratch. A pass that runs out of states to expand proves the
+ * incumbent optimal, as does finishing the unweighted pass. Stopped before
+ * that, the search reports TIMED_OUT or CANCELLED with the incumbent as a
+ * complete line.
+ *
+ * As in the A* of SokoBot, reaching a state that an earlier solve of the
+ * level went through finishes along that solution, and ends the search:
+ * the remembered ending has no cost to compare against the incumbent.
+ */
+class AnytimeSearch {
+  private static final double[] WEIGHTS = { 2, 1.5, 1.25, 1.1, 1 };
+  // Expansions the first pass may spend looking for a solution
+  private static final long FIRST_CAP = 10000;
+  // What a pass returns when it ends without a better solution
+  private static final Node EXHAUSTED = new Node(new short[0], 0, 0, 0);
+  private static final Node STOPPED = new Node(new short[0], 0, 0, 0);
+  private static final Node FULL = new Node(new short[0], 0, 0, 0);
+  private static final Node GAVE_UP = new Node(new short[0], 0, 0, 0);
+
+  private final Expander expander;
+  private final SolverOptions options;
+  private final SolverTrace trace;
+  private final SolutionMemory memory;
+  private final List<Node> neighbors = new ArrayList<>(4);
+
+  // Cost of the best solution so far, in pushes (or moves)
+  private int incumbentCost = Integer.MAX_VALUE;
+  private Node startNode;
+  private Node bestNode;
+  // Moves that finish from the goal a pass returned when it came from SolutionMemory, otherwise null
+  private String ending;
+
+  long nodesExpanded;
+  long nodesGenerated;
+
+  AnytimeSearch(Board board, SolverOptions options, SearchMetrics metrics, SolutionMemory memory) {
+    this.expander = new Expander(board, options, metrics);
+    this.options = options;
+    this.trace = new SolverTrace(board, options);
+    this.memory = memory;
+  }
+
+  /**
+   * Solves until the passes finish or token stops them. Returns null when a
+   * pass outgrows the state budget before there is any solution, so the
+   * caller can fall back to a search with fixed memory; {@link #closer}
+   * then keeps this search's best partial line in play.
+   */
+  SolverResult solve(char[][] itemsData, CancellationToken token) {
+    expander.prepare(token);
+    startNode = expander.initializeStartNode(itemsData);
+    if (memory.isKnown(startNode)) {
+      return new SolverResult(SolverResult.Status.SOLVED, memory.finish(expander.reach, startNode));
+    }
+    if (startNode.estimate == Heuristic.DEAD) {
+      return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+    }
+    bestNode = startNode;
+    long capacity = NodeArena.capacity(options, startNode.crates.length);
+
+    Node solution = null;
+    boolean stopped = false;
+    for (int i = 0; i < WEIGHTS.length; i++) {
+      long cap = solution == null && i < WEIGHTS.length - 1 ? FIRST_CAP << i : Long.MAX_VALUE;
+      Node found;
+      try {
+        found = pass(startNode, WEIGHTS[i], capacity, cap, token);
+      } catch (OutOfMemoryError ex) {
+        found = FULL;
+      }
+      if (found == GAVE_UP) {
+        continue;
+      }
+      stopped = found == STOPPED;
+      boolean improved = found != EXHAUSTED && found != STOPPED && found != FULL;
+      if (improved) {
+        solution = found;
+        incumbentCost = found.cost;
+      }
+      if (trace.summary) {
+        trace.message("weight " + WEIGHTS[i] + " done after " + nodesExpanded + " expansions, best cost "
+            + (solution == null ? "none" : String.valueOf(incumbentCost)));
+      }
+      if (ending != null) {
+        break;
+      }
+      if (solution == null && found == EXHAUSTED) {
+        return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+      }
+      if (solution == null && found == FULL) {
+        return null;
+      }
+      if (!improved) {
+        // EXHAUSTED means nothing cheaper exists anywhere, so the incumbent is optimal
+        break;
+      }
+    }
+
+    if (solution == null) {
+      trace.dump();
+      return SolverResult.stopped(token, expander.reconstructPath(bestNode));
+    }
+    String tail = ending != null ? ending : "";
+    memory.remember(expander, solution, tail);
+    String moves = expander.reconstructPath(solution) + tail;
+    if (stopped) {
+      // A cheaper solution may still exist
+      return SolverResult.stoppedWithSolution(token, moves);
+    }
+    return new SolverResult(SolverResult.Status.SOLVED, moves);
+  }
+
+  /**
+   * Whichever leaves the lower estimate: moves, a partial line from the
+   * same start, or the line to the closest state this search reached.
+   */
+  String closer(String moves) {
+    short[] crates = expander.replay(startNode, moves);
+    if (crates != null && expander.heuristic.estimate(crates) <= bestNode.estimate) {
+      return moves;
+    }
+    return expander.reconstructPath(bestNode);
+  }
+
+  /**
+   * One weighted A* pass that skips anything unable to beat the incumbent.
+   * Returns the goal it reaches with its full parent chain, or a state on a
+   * remembered solution after setting ending, or one of the markers
+   * EXHAUSTED, STOPPED, FULL and GAVE_UP (after cap expansions).
+   */
+  private Node pass(Node startNode, double weight, long capacity, long cap, CancellationToken token) {
+    long expansions = 0;
+    BucketQueue queue = new BucketQueue(SolverOptions.Strategy.A_STAR, weight);
+    NodeArena arena = new NodeArena(startNode.crates.length, options);
+    queue.add(arena.add(startNode, -1), startNode.cost, startNode.estimate);
+    try {
+      while (!queue.isEmpty()) {
+        if (token.isCancelled()) {
+          return STOPPED;
+        }
+        if (arena.size() > capacity) {
+          return FULL;
+        }
+        if (expansions++ >= cap) {
+          return GAVE_UP;
+        }
+        int current = queue.poll();
+        if (arena.isClosed(current)) {
+          continue;
+        }
+        arena.close(current);
+        Node currentNode = arena.node(current);
+        if (trace.expansions) {
+          trace.expanded(currentNode, queue.size());
+        }
+        if (expander.isGoalState(currentNode)) {
+          return arena.path(current);
+        }
+        if (!memory.isEmpty() && memory.isKnown(currentNode)) {
+          ending = memory.finish(expander.reach, currentNode);
+          return arena.path(current);
+        }
+        if (currentNode.estimate < bestNode.estimate) {
+          bestNode = arena.path(current);
+        }
+        if (expander.metrics.due()) {
+          expander.metrics.publish(queue.size(), arena.size(), currentNode.cost + currentNode.estimate);
+        }
+
+        expander.expand(currentNode, neighbors);
+        nodesExpanded++;
+        nodesGenerated += neighbors.size();
+        for (Node neighbor : neighbors) {
+          if (neighbor.cost + neighbor.estimate >= incumbentCost) {
+            continue;
+          }
+          int seen = arena.find(neighbor);
+          if (seen < 0) {
+            queue.add(arena.add(neighbor, current), neighbor.cost, neighbor.estimate);
+          } else if (neighbor.cost < arena.cost(seen)) {
+            arena.update(seen, neighbor, current);
+            queue.add(seen, neighbor.cost, neighbor.estimate);
+          } else {
+            expander.metrics.duplicates++;
+          }
+        }
+      }
+      return EXHAUSTED;
+    } finally {
+      arena.clear();
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forward push search from the start meeting a backward pull search from the
+ * solved layouts, each on its own thread.
+ *
+ * The backward side starts from every crate-on-goal layout, one per player
+ * region, and pulls crates breadth-first. Both sides key states the same way
+ * (sorted crates plus the smallest reachable cell) in one shared table, and
+ * record a state and read the other side's node for it in a single atomic
+ * update, so whichever side reaches a state second sees the first. That hit
+ * joins the forward path to the start with the backward path to a goal. Stopped before
+ * they meet, it returns the forward line to the lowest estimate it expanded.
+ *
+ * The backward side may hold half the memory budget. At that cap it stops
+ * pulling, and the forward side carries on alone against the states it left.
+ * Past the whole budget, or when the heap runs out on either side, the
+ * search gives up and the caller falls back to IDA*.
+ */
+class BidirectionalSearch {
+  private final Board board;
+  private final SolverOptions options;
+  private final SearchMetrics metrics;
+
+  private static final int FORWARD = 0;
+  private static final int BACKWARD = 1;
+  // What visit returns when the side had already reached the state
+  private static final Node DUPLICATE = new Node(new short[0], 0, 0, 0);
+
+  // Every state reached, with the node each side reached it by
+  private final ConcurrentHashMap<Node, Node[]> seen = new ConcurrentHashMap<>();
+  // Cells some starting crate could be pushed to; pulls never need to go anywhere else
+  private final boolean[] pushable;
+
+  private volatile Node forwardMeet;
+  private volatile Node backwardMeet;
+  private volatile boolean exhausted = false;
+  private volatile boolean overBudget = false;
+  private long nodeBudget;
+  // Forward node with the lowest estimate, for the partial line
+  private Node closest;
+
+  long nodesExpanded;
+  long nodesGenerated;
+  long backwardExpanded;
+  long backwardGenerated;
+
+  BidirectionalSearch(Board board, SolverOptions options, SearchMetrics metrics) {
+    this.board = board;
+    this.metrics = metrics;
+    this.options = options.copy();
+    this.options.mode = SolverOptions.SearchMode.PUSHES;
+    this.pushable = new boolean[board.size];
+  }
+
+  /**
+   * Solves until the sides meet, either runs dry, or token stops it. Returns
+   * null when the tables outgrew the memory budget first, so the caller can
+   * fall back to a search with fixed memory.
+   */
+  SolverResult solve(char[][] itemsData, CancellationToken token) {
+    Expander expander = new Expander(board, options, metrics);
+    expander.prepare(token);
+    Node startNode = expander.initializeStartNode(itemsData);
+    if (startNode.estimate == Heuristic.DEAD) {
+      return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+    }
+    markPushable(startNode.crates);
+    nodeBudget = Node.capacity(options, startNode.crates.length);
+
+    Thread backward = new Thread(() -> searchBackward(token), "sokobot-backward");
+    backward.setDaemon(true);
+    backward.start();
+    try {
+      searchForward(expander, startNode, token);
+    } catch (OutOfMemoryError ex) {
+      // The budget estimate was too generous for this heap
+      overBudget = true;
+    } finally {
+      metrics.publish(0, seen.size(), -1);
+      // Either side finishing settles it for both
+      exhausted |= forwardMeet == null;
+      backward.interrupt();
+      // The table is cleared below, so the backward side must be gone first
+      boolean interrupted = false;
+      while (backward.isAlive()) {
+        try {
+          backward.join();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Node meetForward = forwardMeet;
+    Node meetBackward = backwardMeet;
+    seen.clear();
+    if (meetForward != null) {
+      String path = expander.reconstructPath(meetForward) + replayPulls(expander.reach, meetForward, meetBackward);
+      return new SolverResult(SolverResult.Status.SOLVED, path);
+    }
+    if (token.isCancelled()) {
+      return SolverResult.stopped(token, expander.reconstructPath(closest));
+    }
+    if (overBudget) {
+      return null;
+    }
+    return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+  }
+
+  private void searchForward(Expander expander, Node startNode, CancellationToken token) {
+    PriorityQueue<Node> queue = new PriorityQueue<>(Node.BEST_FIRST);
+    List<Node> neighbors = new ArrayList<>(4);
+    queue.add(startNode);
+    closest = startNode;
+    if (meet(startNode, visit(startNode, FORWARD))) {
+      return;
+    }
+
+    while (!queue.isEmpty() && !isFinished() && !token.isCancelled()) {
+      Node currentNode = queue.poll();
+      if (expander.isGoalState(currentNode)) {
+        meet(currentNode, null);
+        return;
+      }
+      if (currentNode.estimate < closest.estimate) {
+        closest = currentNode;
+      }
+      if (seen.mappingCount() > nodeBudget) {
+        overBudget = true;
+        return;
+      }
+      expander.expand(currentNode, neighbors);
+      nodesExpanded++;
+      nodesGenerated += neighbors.size();
+      for (Node neighbor : neighbors) {
+        Node backward = visit(neighbor, FORWARD);
+        if (backward == DUPLICATE) {
+          metrics.duplicates++;
+          continue;
+        }
+        if (meet(neighbor, backward)) {
+          return;
+        }
+        queue.offer(neighbor);
+      }
+      if (metrics.due()) {
+        metrics.publish(queue.size(), seen.size(),
+            currentNode.cost + currentNode.estimate);
+      }
+    }
+  }
+
+  private void searchBackward(CancellationToken token) {
+    try {
+      pullBackward(token);
+    } catch (OutOfMemoryError ex) {
+      // The budget estimate was too generous for this heap
+      overBudget = true;
+    }
+  }
+
+  private void pullBackward(CancellationToken token) {
+    PlayerReach reach = new PlayerReach(board);
+    ArrayDeque<Node> queue = new ArrayDeque<>();
+    long stored = 0;
+    for (Node goalNode : goalNodes(reach)) {
+      Node forward = visit(goalNode, BACKWARD);
+      if (forward != DUPLICATE) {
+        stored++;
+        if (meet(forward, goalNode)) {
+          return;
+        }
+        queue.add(goalNode);
+      }
+    }
+
+    long cap = nodeBudget / 2;
+    List<Node> neighbors = new ArrayList<>();
+    while (!queue.isEmpty() && !isFinished() && !token.isCancelled()
+        && !Thread.currentThread().isInterrupted()) {
+      if (stored > cap) {
+        // Leave the rest of the budget to the forward side, which still meets what is stored
+        return;
+      }
+      Node currentNode = queue.poll();
+      getPulls(currentNode, reach, neighbors);
+      backwardExpanded++;
+      backwardGenerated += neighbors.size();
+      for (Node neighbor : neighbors) {
+        Node forward = visit(neighbor, BACKWARD);
+        if (forward == DUPLICATE) {
+          continue;
+        }
+        stored++;
+        if (meet(forward, neighbor)) {
+          return;
+        }
+        queue.add(neighbor);
+      }
+    }
+    if (queue.isEmpty()) {
+      exhausted = true;
+    }
+  }
+
+  /**
+   * Records node as reached by side. Returns DUPLICATE if that side had
+   * reached its state before, otherwise the other side's node for the
+   * state, or null if the other side has not reached it.
+   */
+  private Node visit(Node node, int side) {
+    Node[] other = { DUPLICATE };
+    seen.compute(node, (key, sides) -> {
+      if (sides == null) {
+        sides = new Node[2];
+      }
+      if (sides[side] == null) {
+        sides[side] = node;
+        other[0] = sides[side ^ 1];
+      }
+      return sides;
+    });
+    return other[0];
+  }
+
+  private synchronized boolean meet(Node forward, Node backward) {
+    if (forward == null || forwardMeet != null) {
+      return forwardMeet != null;
+    }
+    if (backward == null && !isSolved(forward)) {
+      return false;
+    }
+    forwardMeet = forward;
+    backwardMeet = backward;
+    return true;
+  }
+
+  private boolean isSolved(Node node) {
+    for (short crate : node.crates) {
+      if (!board.goals[crate]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isFinished() {
+    return forwardMeet != null || exhausted || overBudget;
+  }
+
+  /**
+   * Every crate on a goal, with the player in each separate region of the
+   * remaining floor.
+   */
+  private List<Node> goalNodes(PlayerReach reach) {
+    short[] crates = new short[board.goalCells.length];
+    for (int i = 0; i < crates.length; i++) {
+      crates[i] = (short) board.goalCells[i];
+    }
+
+    List<Node> goalNodes = new ArrayList<>();
+    boolean[] covered = new boolean[board.size];
+    for (int cell = 0; cell < board.size; cell++) {
+      if (board.walls[cell] || board.goals[cell] || covered[cell]) {
+        continue;
+      }
+      int region = reach.fill(crates, cell);
+      for (int i = 0; i < reach.count(); i++) {
+        covered[reach.cells()[i]] = true;
+      }
+      goalNodes.add(new Node(crates, cell, region, board.hash(crates, region)));
+    }
+    return goalNodes;
+  }
+
+  /**
+   * Fills neighbors with every single pull from the player's region. Pulling
+   * in direction d from cell x moves the crate on x - d onto x and the player
+   * onto x + d. The node records x + d and the push direction -d, which is
+   * the forward move that undoes the pull.
+   */
+  private void getPulls(Node currentNode, PlayerReach reach, List<Node> neighbors) {
+    neighbors.clear();
+    reach.fill(currentNode.crates, currentNode.player);
+    int[] cells = reach.cells();
+    int[] pulls = reach.pushes;
+    int pullCount = 0;
+    for (int i = 0; i < reach.count(); i++) {
+      int cell = cells[i];
+      for (int dir = 0; dir < 4; dir++) {
+        int delta = board.deltas[dir];
+        int crate = cell - delta;
+        int behind = cell + delta;
+        if (currentNode.hasCrate(crate) && pushable[cell] && !board.walls[behind]
+            && !currentNode.hasCrate(behind)) {
+          pulls[pullCount++] = cell * 4 + dir;
+        }
+      }
+    }
+
+    for (int i = 0; i < pullCount; i++) {
+      int cell = pulls[i] / 4;
+      int dir = pulls[i] % 4;
+      int delta = board.deltas[dir];
+      short[] moved = currentNode.moveCrate(currentNode.indexOfCrate(cell - delta), cell);
+      int player = cell + delta;
+      int region = reach.fill(moved, player);
+
+      Node neighborNode = new Node(moved, player, region, board.hash(moved, region));
+      // The forward push that undoes this pull goes the opposite way
+      neighborNode.direction = (byte) (dir ^ 1);
+      neighborNode.parent = currentNode;
+      neighborNode.cost = currentNode.cost + 1;
+      neighbors.add(neighborNode);
+    }
+  }
+
+  /**
+   * Plays the backward chain forward: from the meeting state, walk to where
+   * each pull left the player and push the crate back, until a goal layout.
+   */
+  private String replayPulls(PlayerReach reach, Node forward, Node backward) {
+    StringBuilder path = new StringBuilder();
+    int player = forward.player;
+    for (Node node = backward; node != null && node.parent != null; node = node.parent) {
+      path.append(reach.stepWalk(node.crates, player, node.player));
+      path.append(Board.MOVES[node.direction]);
+      player = node.player + board.deltas[node.direction];
+    }
+    return path.toString();
+  }
+
+  /**
+   * Forward closure of the starting crate cells under single pushes,
+   * ignoring other crates.
+   */
+  private void markPushable(short[] crates) {
+    int[] queue = new int[board.size];
+    int head = 0, tail = 0;
+    for (short crate : crates) {
+      if (!pushable[crate]) {
+        pushable[crate] = true;
+        queue[tail++] = crate;
+      }
+    }
+    while (head < tail) {
+      int cell = queue[head++];
+      for (int delta : board.deltas) {
+        int to = cell + delta;
+        if (!board.walls[to] && !board.walls[cell - delta] && !pushable[to]) {
+          pushable[to] = true;
+          queue[tail++] = to;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package solver;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Static part of a level: walls and goals over a linearized grid.
+ *
+ * The grid is padded with a ring of walls so that a cell index plus one of
+ * the direction deltas never leaves the array, which lets move generation
+ * skip bounds checks. Cell (x, y) of the original map lives at index
+ * (y + 1) * stride + (x + 1).
+ */
+class Board {
+  // Direction order matches the GUI: 0 - up, 1 - down, 2 - left, 3 - right
+  static final char[] MOVES = { 'u', 'd', 'l', 'r' };
+
+  final int width, height, stride, size;
+  final boolean[] walls;
+  final boolean[] goals;
+  // Every non-wall cell, one bit per cell
+  final long[] floorBits;
+  final int[] goalCells;
+  final int[] deltas;
+
+  // Zobrist keys, indexed by cell
+  final long[] crateKeys;
+  final long[] playerKeys;
+
+  final DistanceTables distances;
+  // Floor cells from which a crate can never be pushed onto any goal, one bit per cell
+  final long[] deadSquares;
+  // Per cell: bit 0 when walls are above and below, bit 1 when walls are left and right
+  final byte[] tunnels;
+  // Where every goal is, behind one entrance; planned on first use by a push search
+  private GoalRoom room;
+  private boolean roomPlanned = false;
+  // Built or loaded on first use, then shared by every search on this board
+  private PatternDatabase patterns;
+
+  Board(int width, int height, char[][] mapData) {
+    this.width = width;
+    this.height = height;
+    this.stride = width + 2;
+    this.size = stride * (height + 2);
+    if (size > Short.MAX_VALUE) {
+      // Crates are stored as short cell indexes
+      throw new IllegalArgumentException(width + "x" + height + " board has more than " + Short.MAX_VALUE
+          + " cells");
+    }
+    this.walls = new boolean[size];
+    this.goals = new boolean[size];
+    this.deltas = new int[] { -stride, stride, -1, 1 };
+
+    int goalCount = 0;
+    for (int cell = 0; cell < size; cell++) {
+      int x = x(cell);
+      int y = y(cell);
+      if (y < 0 || y >= height || y >= mapData.length || x < 0 || x >= width || x >= mapData[y].length) {
+        walls[cell] = true;
+      } else if (mapData[y][x] == '#') {
+        walls[cell] = true;
+      } else if (mapData[y][x] == '.') {
+        goals[cell] = true;
+        goalCount++;
+      }
+    }
+
+    floorBits = new long[(size + 63) >>> 6];
+    for (int cell = 0; cell < size; cell++) {
+      if (!walls[cell]) {
+        floorBits[cell >>> 6] |= 1L << cell;
+      }
+    }
+
+    goalCells = new int[goalCount];
+    for (int cell = 0, i = 0; cell < size; cell++) {
+      if (goals[cell]) {
+        goalCells[i++] = cell;
+      }
+    }
+
+    // Fixed seed so hashes (and therefore search order) are reproducible
+    Random random = new Random(0x5eed5eedL);
+    crateKeys = new long[size];
+    playerKeys = new long[size];
+    for (int cell = 0; cell < size; cell++) {
+      crateKeys[cell] = random.nextLong();
+      playerKeys[cell] = random.nextLong();
+    }
+
+    distances = new DistanceTables(this);
+
+    // A cell is alive exactly when some goal's pull search reached it, which
+    // covers corners, goal-free stretches along walls and dead-end pockets alike
+    deadSquares = new long[(size + 63) >>> 6];
+    for (int cell = 0; cell < size; cell++) {
+      if (!walls[cell] && distances.toNearestGoal[cell] == DistanceTables.UNREACHABLE) {
+        deadSquares[cell >>> 6] |= 1L << cell;
+      }
+    }
+
+    tunnels = new byte[size];
+    for (int cell = stride; cell < size - stride; cell++) {
+      if (!walls[cell]) {
+        if (walls[cell - stride] && walls[cell + stride]) {
+          tunnels[cell] |= 1;
+        }
+        if (walls[cell - 1] && walls[cell + 1]) {
+          tunnels[cell] |= 2;
+        }
+      }
+    }
+  }
+
+  /**
+   * The goal room, or null when the map has none. Planned on the first call;
+   * a plan that token cuts short counts as none and is tried again next time.
+   */
+  synchronized GoalRoom room(CancellationToken token) {
+    if (!roomPlanned) {
+      room = GoalRoom.find(this, token);
+      roomPlanned = !token.isCancelled();
+    }
+    return room;
+  }
+
+  synchronized PatternDatabase patterns(int patternSize, File directory, boolean build) {
+    if (patterns == null || patterns.size != Math.min(patternSize, goalCells.length)) {
+      patterns = PatternDatabase.forBoard(this, patternSize, directory, build);
+    }
+    return patterns;
+  }
+
+  // Whether cell is a one-wide corridor along direction dir
+  boolean isTunnel(int cell, int dir) {
+    return (tunnels[cell] & (dir < 2 ? 2 : 1)) != 0;
+  }
+
+  boolean isDead(int cell) {
+    return (deadSquares[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  // Index into MOVES of a udlr character, or -1
+  static int direction(char move) {
+    for (int dir = 0; dir < MOVES.length; dir++) {
+      if (MOVES[dir] == move) {
+        return dir;
+      }
+    }
+    return -1;
+  }
+
+  int cell(int x, int y) {
+    return (y + 1) * stride + (x + 1);
+  }
+
+  int x(int cell) {
+    return cell % stride - 1;
+  }
+
+  int y(int cell) {
+    return cell / stride - 1;
+  }
+
+  long hash(short[] crates, int player) {
+    long hash = playerKeys[player];
+    for (short crate : crates) {
+      hash ^= crateKeys[crate];
+    }
+    return hash;
+  }
+}
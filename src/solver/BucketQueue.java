@@ -0,0 +1,139 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Open list for the sequential search, ordered like {@link Node#ordering}
+ * but with the keys used as array indexes: states, by their index in the
+ * {@link NodeArena}, go into a bucket per primary key (f for A*, h for
+ * greedy, g for breadth-first) and, within it, a stack per tie-breaking
+ * key. Keys are small non-negative integers, so add and poll are constant
+ * time apart from stepping over empty buckets, and no comparator runs.
+ */
+class BucketQueue {
+  private final SolverOptions.Strategy strategy;
+  // Applied to the estimate in A*'s primary key; above 1 trades optimality for speed
+  private final double weight;
+
+  // [primary][secondary] -> stack of state indexes, with its size
+  private int[][][] stacks = new int[64][][];
+  private int[][] depths = new int[64][];
+  // States per primary key, and the lowest secondary key that may be non-empty there
+  private int[] counts = new int[64];
+  private int[] lowest = new int[64];
+  private int min = Integer.MAX_VALUE;
+  private int size;
+
+  BucketQueue(SolverOptions.Strategy strategy) {
+    this(strategy, 1);
+  }
+
+  BucketQueue(SolverOptions.Strategy strategy, double weight) {
+    this.strategy = strategy;
+    this.weight = weight;
+  }
+
+  private int primary(int cost, int estimate) {
+    switch (strategy) {
+      case GREEDY:
+        return estimate;
+      case BREADTH_FIRST:
+        return cost;
+      default:
+        return cost + (int) (weight * estimate);
+    }
+  }
+
+  private int secondary(int cost, int estimate) {
+    switch (strategy) {
+      case GREEDY:
+        return cost;
+      case BREADTH_FIRST:
+        return 0;
+      default:
+        return estimate;
+    }
+  }
+
+  void add(int index, int cost, int estimate) {
+    int p = primary(cost, estimate);
+    int s = secondary(cost, estimate);
+    if (p >= counts.length) {
+      int length = Math.max(p + 1, counts.length * 2);
+      stacks = Arrays.copyOf(stacks, length);
+      depths = Arrays.copyOf(depths, length);
+      counts = Arrays.copyOf(counts, length);
+      lowest = Arrays.copyOf(lowest, length);
+    }
+    if (stacks[p] == null || s >= stacks[p].length) {
+      int length = Math.max(s + 1, stacks[p] == null ? 16 : stacks[p].length * 2);
+      stacks[p] = stacks[p] == null ? new int[length][] : Arrays.copyOf(stacks[p], length);
+      depths[p] = depths[p] == null ? new int[length] : Arrays.copyOf(depths[p], length);
+    }
+    int[] stack = stacks[p][s];
+    int depth = depths[p][s];
+    if (stack == null || depth == stack.length) {
+      stack = stack == null ? new int[16] : Arrays.copyOf(stack, depth * 2);
+      stacks[p][s] = stack;
+    }
+    stack[depth] = index;
+    depths[p][s] = depth + 1;
+
+    if (counts[p]++ == 0 || s < lowest[p]) {
+      lowest[p] = s;
+    }
+    min = Math.min(min, p);
+    size++;
+  }
+
+  /**
+   * Removes and returns the first state in order, or -1 when empty.
+   */
+  int poll() {
+    if (size == 0) {
+      return -1;
+    }
+    int p = firstPrimary();
+    int s = lowest[p];
+    int depth = --depths[p][s];
+    counts[p]--;
+    size--;
+    return stacks[p][s][depth];
+  }
+
+  int peek() {
+    if (size == 0) {
+      return -1;
+    }
+    int p = firstPrimary();
+    return stacks[p][lowest[p]][depths[p][lowest[p]] - 1];
+  }
+
+  // Moves min and lowest[min] forward to the first non-empty stack
+  private int firstPrimary() {
+    while (counts[min] == 0) {
+      min++;
+    }
+    while (depths[min][lowest[min]] == 0) {
+      lowest[min]++;
+    }
+    return min;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    stacks = new int[64][][];
+    depths = new int[64][];
+    counts = new int[64];
+    lowest = new int[64];
+    min = Integer.MAX_VALUE;
+    size = 0;
+  }
+}
@@ -0,0 +1,30 @@
+package solver;
+
+/**
+ * Tells a running search to stop: either someone called {@link #cancel()},
+ * the deadline passed, or the searching thread was interrupted. Search loops
+ * poll {@link #isCancelled()} once per expansion.
+ */
+public class CancellationToken {
+  private final long deadline;
+  private volatile boolean cancelled = false;
+
+  /**
+   * @param timeLimitMillis time allowed from now, or 0 for no limit
+   */
+  public CancellationToken(long timeLimitMillis) {
+    this.deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000L : 0;
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled || isExpired() || Thread.currentThread().isInterrupted();
+  }
+
+  public boolean isExpired() {
+    return deadline != 0 && System.nanoTime() - deadline >= 0;
+  }
+}
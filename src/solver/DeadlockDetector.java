@@ -0,0 +1,266 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Detects deadlocks that depend on where the crates are, run on the crate
+ * that was just pushed.
+ *
+ * Freeze and 2x2 checks only look at the crates in a 5x5 window around the
+ * pushed crate. More crates can only freeze more crates, so a deadlock found
+ * in the window is a deadlock on the full board, and the verdict depends on
+ * nothing but the window contents. It is memoized in a direct-mapped cache
+ * keyed by the pushed cell and the window's occupancy bits.
+ *
+ * Corral checks look at the region the player can no longer enter, so they
+ * see the whole board and are not cached.
+ */
+class DeadlockDetector {
+  private static final int RADIUS = 2;
+
+  private final Board board;
+  private final boolean[] walls;
+
+  // A cell holds a crate when its mark equals occupiedGen
+  private final int[] occupied;
+  private int occupiedGen = 0;
+  // Crates being checked for freezing are treated as walls while their mark equals frozenGen
+  private final int[] walled;
+  private int frozenGen = 0;
+  private boolean frozenOffGoal;
+  // Crates currently marked as walls, so a failed branch can take back what it assumed
+  private final int[] frozenStack;
+  private int frozenCount;
+
+  private final int[] queue;
+  private final int[] corral;
+  private int corralGen = 0;
+
+  private final long[] cacheKeys;
+  private final boolean[] cacheValues;
+  private final int cacheMask;
+
+  DeadlockDetector(Board board, int cacheSize) {
+    this.board = board;
+    this.walls = board.walls;
+    this.occupied = new int[board.size];
+    this.walled = new int[board.size];
+    this.frozenStack = new int[board.size];
+    this.queue = new int[board.size];
+    this.corral = new int[board.size];
+
+    int capacity = Integer.highestOneBit(Math.min(Math.max(cacheSize, 1), 1 << 24));
+    this.cacheKeys = new long[capacity];
+    this.cacheValues = new boolean[capacity];
+    this.cacheMask = capacity - 1;
+  }
+
+  /**
+   * Checks the pushed crate for 2x2 blocks and freeze deadlocks among the
+   * crates near it.
+   */
+  boolean isDeadlocked(short[] crates, int pushed) {
+    long key = loadWindow(crates, pushed);
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & cacheMask;
+    if (cacheKeys[slot] == key) {
+      return cacheValues[slot];
+    }
+
+    boolean deadlocked = isBlocked2x2(pushed) || isFreezeDeadlock(pushed);
+    cacheKeys[slot] = key;
+    cacheValues[slot] = deadlocked;
+    return deadlocked;
+  }
+
+  /**
+   * Checks whether the push sealed off a region the player can never enter
+   * again that cannot end up solved. The region is every cell reach did not
+   * get to that connects to the pushed crate without crossing a wall. If every
+   * crate on its border is frozen, nothing inside will ever move, so a crate
+   * off a goal or an empty goal inside it is a deadlock.
+   *
+   * reach must hold the fill of the player's region after the push.
+   */
+  boolean isCorralDeadlocked(short[] crates, int pushed, PlayerReach reach) {
+    if (!sealsOffCell(pushed, reach)) {
+      return false;
+    }
+    loadAll(crates);
+    if (++corralGen == 0) {
+      Arrays.fill(corral, 0);
+      corralGen = 1;
+    }
+
+    boolean unsolved = false;
+    int head = 0, tail = 0;
+    corral[pushed] = corralGen;
+    queue[tail++] = pushed;
+    while (head < tail) {
+      int cell = queue[head++];
+      if (hasCrate(cell) != board.goals[cell]) {
+        unsolved = true;
+      }
+      for (int delta : board.deltas) {
+        int next = cell + delta;
+        if (corral[next] != corralGen && !walls[next] && !reach.reached(next)) {
+          corral[next] = corralGen;
+          queue[tail++] = next;
+        }
+      }
+    }
+    if (!unsolved) {
+      return false;
+    }
+
+    // The pushed crate is always on the border, so it goes first
+    for (int i = 0; i < tail; i++) {
+      int cell = queue[i];
+      if (hasCrate(cell) && touchesRegion(cell, reach)) {
+        beginFreezeCheck();
+        if (!isFrozen(cell)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean sealsOffCell(int crate, PlayerReach reach) {
+    for (int delta : board.deltas) {
+      int next = crate + delta;
+      if (!walls[next] && !reach.reached(next)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean touchesRegion(int cell, PlayerReach reach) {
+    for (int delta : board.deltas) {
+      if (reach.reached(cell + delta)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isBlocked2x2(int crate) {
+    int stride = board.stride;
+    return isBlockedSquare(crate, crate - 1, crate - stride, crate - stride - 1)
+        || isBlockedSquare(crate, crate + 1, crate - stride, crate - stride + 1)
+        || isBlockedSquare(crate, crate - 1, crate + stride, crate + stride - 1)
+        || isBlockedSquare(crate, crate + 1, crate + stride, crate + stride + 1);
+  }
+
+  // Four cells that are all walls or crates, with at least one crate off its goal
+  private boolean isBlockedSquare(int a, int b, int c, int d) {
+    return isFilled(a) && isFilled(b) && isFilled(c) && isFilled(d)
+        && (isCrateOffGoal(a) || isCrateOffGoal(b) || isCrateOffGoal(c) || isCrateOffGoal(d));
+  }
+
+  private boolean isFilled(int cell) {
+    return walls[cell] || hasCrate(cell);
+  }
+
+  private boolean isCrateOffGoal(int cell) {
+    return hasCrate(cell) && !board.goals[cell];
+  }
+
+  private boolean isFreezeDeadlock(int crate) {
+    beginFreezeCheck();
+    return isFrozen(crate) && frozenOffGoal;
+  }
+
+  private void beginFreezeCheck() {
+    if (++frozenGen == 0) {
+      Arrays.fill(walled, 0);
+      frozenGen = 1;
+    }
+    frozenOffGoal = false;
+    frozenCount = 0;
+  }
+
+  /**
+   * A crate is frozen when it is blocked along both axes. Crates under
+   * examination count as walls, which breaks cycles and lets a pair of
+   * crates freeze each other.
+   */
+  private boolean isFrozen(int crate) {
+    int mark = frozenCount;
+    boolean offGoal = frozenOffGoal;
+    walled[crate] = frozenGen;
+    frozenStack[frozenCount++] = crate;
+
+    boolean frozen = isBlocked(crate, 1) && isBlocked(crate, board.stride);
+    if (frozen) {
+      frozenOffGoal |= !board.goals[crate];
+    } else {
+      // Crates found frozen on the assumption that this one was a wall are not frozen after all
+      while (frozenCount > mark) {
+        walled[frozenStack[--frozenCount]] = 0;
+      }
+      frozenOffGoal = offGoal;
+    }
+    return frozen;
+  }
+
+  private boolean isBlocked(int crate, int delta) {
+    int before = crate - delta;
+    int after = crate + delta;
+    if (isWall(before) || isWall(after)) {
+      return true;
+    }
+    if (board.isDead(before) && board.isDead(after)) {
+      return true;
+    }
+    return (hasCrate(before) && isFrozen(before)) || (hasCrate(after) && isFrozen(after));
+  }
+
+  private boolean isWall(int cell) {
+    return walls[cell] || walled[cell] == frozenGen;
+  }
+
+  private boolean hasCrate(int cell) {
+    return occupied[cell] == occupiedGen;
+  }
+
+  private void nextOccupancy() {
+    if (++occupiedGen == 0) {
+      Arrays.fill(occupied, 0);
+      occupiedGen = 1;
+    }
+  }
+
+  private void loadAll(short[] crates) {
+    nextOccupancy();
+    for (short crate : crates) {
+      occupied[crate] = occupiedGen;
+    }
+  }
+
+  /**
+   * Marks only the crates inside the window around center and returns the
+   * cache key: the center cell followed by one occupancy bit per window cell.
+   */
+  private long loadWindow(short[] crates, int center) {
+    nextOccupancy();
+    int centerX = center % board.stride;
+    int centerY = center / board.stride;
+    int rows = board.size / board.stride;
+    long bits = 0;
+    int bit = 0;
+    for (int y = centerY - RADIUS; y <= centerY + RADIUS; y++) {
+      for (int x = centerX - RADIUS; x <= centerX + RADIUS; x++, bit++) {
+        if (x < 0 || x >= board.stride || y < 0 || y >= rows) {
+          continue;
+        }
+        int cell = y * board.stride + x;
+        if (Arrays.binarySearch(crates, (short) cell) >= 0) {
+          occupied[cell] = occupiedGen;
+          bits |= 1L << bit;
+        }
+      }
+    }
+    return ((long) center << 25) | bits;
+  }
+}
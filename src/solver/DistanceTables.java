@@ -0,0 +1,51 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Push distances from every floor cell to every goal, computed once per map.
+ *
+ * Each table is a breadth-first search of crate pulls starting at a goal: a
+ * crate on cell c can have come from c - d only if both c - d and the cell
+ * behind it, where the pushing player stood, are floor. Other crates are
+ * ignored, so the distances are lower bounds on the pushes actually needed.
+ */
+class DistanceTables {
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  // [goal index][cell] -> pushes, or UNREACHABLE
+  final int[][] toGoal;
+  // [cell] -> pushes to the nearest goal, or UNREACHABLE
+  final int[] toNearestGoal;
+
+  DistanceTables(Board board) {
+    toGoal = new int[board.goalCells.length][];
+    toNearestGoal = new int[board.size];
+    Arrays.fill(toNearestGoal, UNREACHABLE);
+
+    int[] queue = new int[board.size];
+    for (int g = 0; g < board.goalCells.length; g++) {
+      int[] distance = new int[board.size];
+      Arrays.fill(distance, UNREACHABLE);
+      int goal = board.goalCells[g];
+      distance[goal] = 0;
+      int head = 0, tail = 0;
+      queue[tail++] = goal;
+      while (head < tail) {
+        int cell = queue[head++];
+        for (int delta : board.deltas) {
+          int from = cell - delta;
+          int player = from - delta;
+          if (!board.walls[from] && !board.walls[player] && distance[from] == UNREACHABLE) {
+            distance[from] = distance[cell] + 1;
+            queue[tail++] = from;
+          }
+        }
+      }
+      toGoal[g] = distance;
+      for (int cell = 0; cell < board.size; cell++) {
+        toNearestGoal[cell] = Math.min(toNearestGoal[cell], distance[cell]);
+      }
+    }
+  }
+}
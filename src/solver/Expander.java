@@ -0,0 +1,366 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Successor generation for one board. Holds the per-map analysis and the
+ * scratch buffers a search thread needs, so each thread gets its own.
+ */
+class Expander {
+  private static final int MAX_TUNNEL_PUSHES = 1000;
+  final Board board;
+  final SolverOptions.SearchMode mode;
+  final PlayerReach reach;
+  final Heuristic heuristic;
+  final DeadlockDetector deadlocks;
+  final SearchMetrics metrics;
+  // The goal room push search fills in one go, once prepare has planned it
+  private GoalRoom room;
+  // Whether the current expansion is one of the few that time the heuristic
+  private boolean timing = false;
+
+  Expander(Board board, SolverOptions options) {
+    this(board, options, new SearchMetrics());
+  }
+
+  Expander(Board board, SolverOptions options, SearchMetrics metrics) {
+    this.board = board;
+    this.metrics = metrics;
+    this.mode = options.mode;
+    this.reach = new PlayerReach(board);
+    this.heuristic = createHeuristic(board, options);
+    this.deadlocks = new DeadlockDetector(board, options.deadlockCacheSize);
+  }
+
+  private static Heuristic createHeuristic(Board board, SolverOptions options) {
+    switch (options.heuristic) {
+      case MANHATTAN:
+        return new ManhattanHeuristic(board);
+      case MATCHING:
+        return new MatchingHeuristic(board);
+      case PATTERN_DATABASE:
+        return patternHeuristic(board, options);
+      default:
+        return new PushDistanceHeuristic(board);
+    }
+  }
+
+  private static Heuristic patternHeuristic(Board board, SolverOptions options) {
+    PatternDatabase patterns = board.patterns(options.patternSize, options.patternDirectory, options.buildPatterns);
+    // No table to be had for this board: the matching is the better half of the bound anyway
+    return patterns != null ? new PatternDatabaseHeuristic(board, patterns) : new MatchingHeuristic(board);
+  }
+
+  /**
+   * Plans the goal room for push search. On big maps that can take a while,
+   * so it waits for a search and its token instead of running with the rest
+   * of the board analysis.
+   */
+  void prepare(CancellationToken token) {
+    if (mode == SolverOptions.SearchMode.PUSHES) {
+      room = board.room(token);
+    }
+  }
+
+  Node initializeStartNode(char[][] itemsData) {
+    int player = -1;
+    short[] crates = new short[board.size];
+    int crateCount = 0;
+
+    for (int y = 0; y < itemsData.length; y++) {
+      for (int x = 0; x < itemsData[y].length; x++) {
+        if (itemsData[y][x] == '@') {
+          player = board.cell(x, y);
+        } else if (itemsData[y][x] == '$') {
+          crates[crateCount++] = (short) board.cell(x, y);
+        }
+      }
+    }
+    crates = Arrays.copyOf(crates, crateCount);
+    Arrays.sort(crates);
+    int region = player;
+    if (mode == SolverOptions.SearchMode.PUSHES) {
+      region = reach.fill(crates, player);
+    }
+    Node startNode = new Node(crates, player, region, board.hash(crates, region));
+    startNode.estimate = heuristic.estimate(crates);
+    return startNode;
+  }
+
+  boolean isGoalState(Node node) {
+    // Check if all crates are on target positions
+    for (short crate : node.crates) {
+      // If the crate is not on a target position, it's not a goal state
+      if (!board.goals[crate]) {
+        return false;
+      }
+    }
+
+    // All crates are on target positions, it's a goal state
+    return true;
+  }
+
+  /**
+   * Replays moves from startNode and checks that every step is legal and
+   * that all crates end up on goals.
+   */
+  boolean isSolution(Node startNode, String moves) {
+    short[] crates = replay(startNode, moves);
+    if (crates == null) {
+      return false;
+    }
+    for (short crate : crates) {
+      if (!board.goals[crate]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The crate cells, in order, after playing moves from startNode, or null
+   * if some step is illegal.
+   */
+  short[] replay(Node startNode, String moves) {
+    boolean[] crates = new boolean[board.size];
+    for (short crate : startNode.crates) {
+      crates[crate] = true;
+    }
+    int player = startNode.player;
+    for (int i = 0; i < moves.length(); i++) {
+      int dir = Board.direction(moves.charAt(i));
+      if (dir < 0) {
+        return null;
+      }
+      int next = player + board.deltas[dir];
+      if (board.walls[next]) {
+        return null;
+      }
+      if (crates[next]) {
+        int target = next + board.deltas[dir];
+        if (board.walls[target] || crates[target]) {
+          return null;
+        }
+        crates[next] = false;
+        crates[target] = true;
+      }
+      player = next;
+    }
+    short[] cells = new short[startNode.crates.length];
+    int n = 0;
+    for (int cell = 0; cell < board.size; cell++) {
+      if (crates[cell]) {
+        cells[n++] = (short) cell;
+      }
+    }
+    return cells;
+  }
+
+  void expand(Node currentNode, List<Node> neighbors) {
+    timing = metrics.expanded++ % SearchMetrics.SAMPLE_RATE == 0;
+    long start = timing ? System.nanoTime() : 0;
+    if (mode == SolverOptions.SearchMode.PUSHES) {
+      getPushes(currentNode, neighbors);
+    } else {
+      getNeighbors(currentNode, neighbors);
+    }
+    metrics.generated += neighbors.size();
+    if (timing) {
+      metrics.sampledNanos += System.nanoTime() - start;
+      timing = false;
+    }
+  }
+
+  private int estimate(short[] parentCrates, int index, int cell, short[] crates) {
+    if (!timing) {
+      return heuristic.estimate(parentCrates, index, cell, crates);
+    }
+    long start = System.nanoTime();
+    int estimate = heuristic.estimate(parentCrates, index, cell, crates);
+    metrics.heuristicNanos += System.nanoTime() - start;
+    return estimate;
+  }
+
+  /**
+   * Reconstructs the udlr path from the start node to node. Each node records
+   * the direction of its last step or push; in push mode the walk leading up
+   * to the push is recovered here rather than stored in the search.
+   */
+  String reconstructPath(Node node) {
+    List<Node> chain = new ArrayList<>();
+    for (; node.parent != null; node = node.parent) {
+      chain.add(node);
+    }
+
+    StringBuilder path = new StringBuilder();
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      appendStep(path, chain.get(i));
+    }
+    return path.toString();
+  }
+
+  /**
+   * Appends the moves from step's parent to step: the walk to the crate,
+   * the pushes, and for a goal room fill the moves that finish it.
+   */
+  void appendStep(StringBuilder path, Node step) {
+    int delta = board.deltas[step.direction];
+    int straight = step.pushes;
+    int pushFrom = step.player - straight * delta;
+    String fill = null;
+    if (step.fill >= 0) {
+      fill = room.fills[step.fill / 4][step.direction];
+      straight -= room.fillPushes[step.fill / 4][step.direction];
+      pushFrom = room.entrance - (straight + 1) * delta;
+    }
+    path.append(reach.stepWalk(step.parent.crates, step.parent.player, pushFrom));
+    for (int i = 0; i < straight; i++) {
+      path.append(Board.MOVES[step.direction]);
+    }
+    if (fill != null) {
+      path.append(fill);
+    }
+  }
+
+  /**
+   * Fills neighbors with the successors of currentNode. Walking moves share the
+   * parent's crate array and estimate; only pushes copy and re-evaluate them.
+   */
+  void getNeighbors(Node currentNode, List<Node> neighbors) {
+    neighbors.clear();
+    int player = currentNode.player;
+
+    for (int dir = 0; dir < 4; dir++) {
+      int delta = board.deltas[dir];
+      int next = player + delta;
+
+      // The padded board guarantees next is in range
+      if (board.walls[next]) {
+        continue;
+      }
+
+      long hash = currentNode.hash ^ board.playerKeys[player] ^ board.playerKeys[next];
+      int crateIndex = currentNode.indexOfCrate(next);
+      Node neighborNode;
+
+      if (crateIndex < 0) {
+        neighborNode = new Node(currentNode.crates, next, next, hash);
+        neighborNode.estimate = currentNode.estimate;
+      } else {
+        int target = next + delta;
+        if (board.walls[target] || currentNode.hasCrate(target)) {
+          continue; // Unable to move crate
+        }
+        if (board.isDead(target)) {
+          metrics.deadSquarePrunes++;
+          continue;
+        }
+        short[] moved = currentNode.moveCrate(crateIndex, target);
+        if (deadlocks.isDeadlocked(moved, target)) {
+          metrics.frozenPrunes++;
+          continue;
+        }
+        int estimate = estimate(currentNode.crates, crateIndex, target, moved);
+        if (estimate == Heuristic.DEAD) {
+          metrics.unmatchedPrunes++;
+          continue;
+        }
+        hash ^= board.crateKeys[next] ^ board.crateKeys[target];
+        neighborNode = new Node(moved, next, next, hash);
+        neighborNode.estimate = estimate;
+      }
+
+      neighborNode.direction = (byte) dir;
+      neighborNode.parent = currentNode;
+      neighborNode.cost = currentNode.cost + 1;
+      neighbors.add(neighborNode);
+    }
+  }
+
+  /**
+   * Fills neighbors with every single push available from the player's
+   * current region. The player ends up where the crate was, and the
+   * successor is keyed by the region it can walk to from there.
+   */
+  void getPushes(Node currentNode, List<Node> neighbors) {
+    neighbors.clear();
+
+    // Collect the candidate pushes first: the per-successor fills below reuse the buffers
+    reach.fill(currentNode.crates, currentNode.player);
+    int[] pushes = reach.pushes;
+    int pushCount = 0;
+    for (int dir = 0; dir < 4; dir++) {
+      long[] pushable = reach.pushable(dir);
+      for (int w = 0; w < pushable.length; w++) {
+        // Crates whose target is a dead square
+        long dead = pushable[w] & PlayerReach.shifted(board.deadSquares, w, -board.deltas[dir]);
+        metrics.deadSquarePrunes += Long.bitCount(dead);
+        for (long bits = pushable[w] & ~dead; bits != 0; bits &= bits - 1) {
+          pushes[pushCount++] = ((w << 6) + Long.numberOfTrailingZeros(bits)) * 4 + dir;
+        }
+      }
+    }
+
+    for (int i = 0; i < pushCount; i++) {
+      int crate = pushes[i] / 4;
+      int dir = pushes[i] % 4;
+      int delta = board.deltas[dir];
+      int crateIndex = currentNode.indexOfCrate(crate);
+      int target = crate + delta;
+      int steps = 1;
+      // Once crate and player are both in a corridor, the only thing to do is keep pushing
+      while (steps < MAX_TUNNEL_PUSHES && continuesThroughTunnel(currentNode, target, dir)) {
+        target += delta;
+        steps++;
+      }
+      int player = target - delta;
+      short[] moved = currentNode.moveCrate(crateIndex, target);
+
+      // A crate arriving at the goal room goes straight to the next goal in the packing order
+      int fill = -1;
+      if (room != null && target == room.entrance) {
+        int packed = room.packedCount(moved);
+        if (packed >= 0 && packed < room.order.length && room.fills[packed][dir] != null) {
+          target = room.order[packed];
+          player = room.fillPlayers[packed][dir];
+          steps += room.fillPushes[packed][dir];
+          moved = currentNode.moveCrate(crateIndex, target);
+          fill = packed * 4 + dir;
+        }
+      }
+
+      if (deadlocks.isDeadlocked(moved, target)) {
+        metrics.frozenPrunes++;
+        continue;
+      }
+      int estimate = estimate(currentNode.crates, crateIndex, target, moved);
+      if (estimate == Heuristic.DEAD) {
+        metrics.unmatchedPrunes++;
+        continue;
+      }
+      int region = reach.fill(moved, player);
+      if (deadlocks.isCorralDeadlocked(moved, target, reach)) {
+        metrics.corralPrunes++;
+        continue;
+      }
+
+      Node neighborNode = new Node(moved, player, region, board.hash(moved, region));
+      neighborNode.estimate = estimate;
+      neighborNode.direction = (byte) dir;
+      neighborNode.pushes = (short) steps;
+      neighborNode.fill = (short) fill;
+      neighborNode.parent = currentNode;
+      neighborNode.cost = currentNode.cost + steps;
+      neighbors.add(neighborNode);
+    }
+  }
+
+  // Whether a crate just pushed onto cell, with the player behind it, should go one further
+  private boolean continuesThroughTunnel(Node node, int cell, int dir) {
+    int next = cell + board.deltas[dir];
+    return board.isTunnel(cell, dir) && board.isTunnel(cell - board.deltas[dir], dir) && !board.goals[cell]
+        && !board.walls[next] && !board.isDead(next) && !node.hasCrate(next);
+  }
+}
@@ -0,0 +1,317 @@
+package solver;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A part of the map that holds every goal and is only reachable through one
+ * entrance cell, with an order to fill its goals in and the exact moves that
+ * take a crate from the entrance to each goal in turn.
+ *
+ * The order comes from emptying a full room: repeatedly take out the
+ * removable crate nearest the entrance, and fill in the reverse order. Each
+ * fill path is searched with only the crates already packed in place and the
+ * player confined to the room, so it stays valid whatever happens outside.
+ *
+ * Planning searches (crate, player) states for every goal and side, so it
+ * is only tried on rooms of at most MAX_CELLS cells holding at most
+ * MAX_GOALS goals, and it gives up as soon as its token is cancelled.
+ */
+class GoalRoom {
+  private static final int MAX_CELLS = 128;
+  private static final int MAX_GOALS = 16;
+
+  final int entrance;
+  final boolean[] inside;
+  // Goal cells in filling order
+  final int[] order;
+  // [crates already packed][direction the crate came in] -> moves from just after it
+  // entered, or null when it cannot get to the next goal from that side
+  final String[][] fills;
+  final int[][] fillPushes;
+  // Where the player ends up after each fill
+  final int[][] fillPlayers;
+
+  private final Board board;
+  private final CancellationToken token;
+
+  private GoalRoom(Board board, CancellationToken token, int entrance, boolean[] inside) {
+    this.board = board;
+    this.token = token;
+    this.entrance = entrance;
+    this.inside = inside;
+    this.order = new int[board.goalCells.length];
+    this.fills = new String[order.length][4];
+    this.fillPushes = new int[order.length][4];
+    this.fillPlayers = new int[order.length][4];
+  }
+
+  /**
+   * The smallest goal room on board with a workable packing order, or null,
+   * also when token is cancelled first.
+   */
+  static GoalRoom find(Board board, CancellationToken token) {
+    if (board.goalCells.length < 2 || board.goalCells.length > MAX_GOALS) {
+      return null;
+    }
+    // Only the floor connected to the goals counts; spaces outside the level's walls are floor too
+    int floor = connected(board, board.goalCells[0]);
+
+    boolean[] best = null;
+    int bestEntrance = -1;
+    int bestSize = Integer.MAX_VALUE;
+    for (int entrance = 0; entrance < board.size; entrance++) {
+      if (token.isCancelled()) {
+        return null;
+      }
+      if (board.walls[entrance] || board.goals[entrance]) {
+        continue;
+      }
+      boolean[] inside = new boolean[board.size];
+      int size = flood(board, entrance, inside);
+      // Cells connected to the goals only through the entrance make it a cut cell, the only way in
+      if (size > 0 && size + 1 < floor && size < bestSize && holdsEveryGoal(board, inside)) {
+        best = inside;
+        bestEntrance = entrance;
+        bestSize = size;
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    GoalRoom room = new GoalRoom(board, token, bestEntrance, best);
+    return room.plan() ? room : null;
+  }
+
+  /**
+   * Marks the cells connected to the goals without passing through the
+   * entrance and returns how many there are, or 0 once they outnumber
+   * MAX_CELLS.
+   */
+  private static int flood(Board board, int entrance, boolean[] inside) {
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    int start = board.goalCells[0];
+    inside[start] = true;
+    queue.add(start);
+    int size = 1;
+    while (!queue.isEmpty()) {
+      int cell = queue.poll();
+      for (int delta : board.deltas) {
+        int next = cell + delta;
+        if (!board.walls[next] && next != entrance && !inside[next]) {
+          if (++size > MAX_CELLS) {
+            return 0;
+          }
+          inside[next] = true;
+          queue.add(next);
+        }
+      }
+    }
+    return size;
+  }
+
+  // How many floor cells connect to start
+  private static int connected(Board board, int start) {
+    boolean[] seen = new boolean[board.size];
+    int[] queue = new int[board.size];
+    int head = 0, tail = 0;
+    seen[start] = true;
+    queue[tail++] = start;
+    while (head < tail) {
+      int cell = queue[head++];
+      for (int delta : board.deltas) {
+        int next = cell + delta;
+        if (!board.walls[next] && !seen[next]) {
+          seen[next] = true;
+          queue[tail++] = next;
+        }
+      }
+    }
+    return tail;
+  }
+
+  private static boolean holdsEveryGoal(Board board, boolean[] inside) {
+    for (int goal : board.goalCells) {
+      if (!inside[goal]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Works out the packing order and fill paths. Returns false when the full
+   * room cannot be emptied one crate at a time, or when token is cancelled.
+   */
+  private boolean plan() {
+    boolean[] packed = new boolean[board.size];
+    for (int goal : board.goalCells) {
+      packed[goal] = true;
+    }
+    int[] distance = walkDistances();
+
+    for (int j = order.length - 1; j >= 0; j--) {
+      if (token.isCancelled()) {
+        return false;
+      }
+      int chosen = -1;
+      for (int goal : board.goalCells) {
+        if (packed[goal] && (chosen < 0 || distance[goal] < distance[chosen])) {
+          packed[goal] = false;
+          if (fillFromAnySide(packed, goal)) {
+            chosen = goal;
+          }
+          packed[goal] = true;
+        }
+      }
+      if (chosen < 0) {
+        return false;
+      }
+      packed[chosen] = false;
+      order[j] = chosen;
+      for (int dir = 0; dir < 4; dir++) {
+        fillPath(packed, chosen, dir, j);
+      }
+    }
+    return true;
+  }
+
+  private boolean fillFromAnySide(boolean[] packed, int goal) {
+    for (int dir = 0; dir < 4; dir++) {
+      if (search(packed, goal, dir) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void fillPath(boolean[] packed, int goal, int dir, int j) {
+    String moves = search(packed, goal, dir);
+    fills[j][dir] = moves;
+    if (moves != null) {
+      // Every step the player takes into the crate's cell is a push
+      int pushes = 0;
+      int player = entrance - board.deltas[dir];
+      int crate = entrance;
+      for (int i = 0; i < moves.length(); i++) {
+        int delta = board.deltas[Board.direction(moves.charAt(i))];
+        player += delta;
+        if (player == crate) {
+          crate += delta;
+          pushes++;
+        }
+      }
+      fillPushes[j][dir] = pushes;
+      fillPlayers[j][dir] = player;
+    }
+  }
+
+  /**
+   * Breadth-first search over (crate, player) for the moves that take a crate
+   * pushed into the entrance in direction dir to goal, with packed crates
+   * fixed and the player kept to the room and the cell it pushed from.
+   */
+  private String search(boolean[] packed, int goal, int dir) {
+    int outside = entrance - board.deltas[dir];
+    if (board.walls[outside] || inside[outside] || board.walls[outside - board.deltas[dir]]) {
+      return null;
+    }
+
+    int[] local = new int[board.size];
+    Arrays.fill(local, -1);
+    int[] cells = new int[board.size];
+    int n = 0;
+    for (int cell = 0; cell < board.size; cell++) {
+      if ((inside[cell] || cell == entrance || cell == outside) && !packed[cell]) {
+        local[cell] = n;
+        cells[n++] = cell;
+      }
+    }
+    if (local[goal] < 0) {
+      return null;
+    }
+
+    int states = n * n;
+    int[] parent = new int[states];
+    byte[] via = new byte[states];
+    Arrays.fill(parent, -2);
+    int[] queue = new int[states];
+    int head = 0, tail = 0;
+    int start = local[entrance] * n + local[outside];
+    parent[start] = -1;
+    queue[tail++] = start;
+    while (head < tail) {
+      int state = queue[head++];
+      int crate = cells[state / n];
+      int player = cells[state % n];
+      if (crate == goal) {
+        StringBuilder moves = new StringBuilder();
+        for (int s = state; parent[s] >= 0; s = parent[s]) {
+          moves.append(Board.MOVES[via[s]]);
+        }
+        return moves.reverse().toString();
+      }
+      for (int d = 0; d < 4; d++) {
+        int delta = board.deltas[d];
+        int next = player + delta;
+        if (local[next] < 0) {
+          continue;
+        }
+        int nextCrate = crate;
+        if (next == crate) {
+          nextCrate = crate + delta;
+          // Pushes stay inside; the cell outside is only there to push from
+          if (local[nextCrate] < 0 || nextCrate == outside) {
+            continue;
+          }
+        }
+        int nextState = local[nextCrate] * n + local[next];
+        if (parent[nextState] == -2) {
+          parent[nextState] = state;
+          via[nextState] = (byte) d;
+          queue[tail++] = nextState;
+        }
+      }
+    }
+    return null;
+  }
+
+  // Walking distance from the entrance to every room cell, ignoring crates
+  private int[] walkDistances() {
+    int[] distance = new int[board.size];
+    Arrays.fill(distance, Integer.MAX_VALUE);
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    distance[entrance] = 0;
+    queue.add(entrance);
+    while (!queue.isEmpty()) {
+      int cell = queue.poll();
+      for (int delta : board.deltas) {
+        int next = cell + delta;
+        if (inside[next] && distance[next] == Integer.MAX_VALUE) {
+          distance[next] = distance[cell] + 1;
+          queue.add(next);
+        }
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * How many crates are packed, if the crates inside the room are exactly
+   * the first goals of the order, otherwise -1. The entrance is not counted.
+   */
+  int packedCount(short[] crates) {
+    int count = 0;
+    for (short crate : crates) {
+      if (inside[crate]) {
+        count++;
+      }
+    }
+    for (int j = 0; j < count; j++) {
+      if (Arrays.binarySearch(crates, (short) order[j]) < 0) {
+        return -1;
+      }
+    }
+    return count;
+  }
+}
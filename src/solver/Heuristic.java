@@ -0,0 +1,21 @@
+package solver;
+
+/**
+ * Estimates the number of pushes left to solve a crate layout. Implementations
+ * must never overestimate, or A* loses its optimality guarantee.
+ */
+interface Heuristic {
+  // Returned when some crate can no longer reach any goal
+  int DEAD = Integer.MAX_VALUE;
+
+  int estimate(short[] crates);
+
+  /**
+   * Estimate for crates, which is parentCrates with the crate at index moved
+   * to cell. Implementations that can reuse work done for the parent override
+   * this; siblings are evaluated one after another for the same parent.
+   */
+  default int estimate(short[] parentCrates, int index, int cell, short[] crates) {
+    return estimate(crates);
+  }
+}
@@ -0,0 +1,200 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterative-deepening A*: repeated depth-first searches with a growing bound
+ * on cost + estimate. Only the current path is held in memory, plus a
+ * transposition table that cuts off states already reached more cheaply in
+ * the same iteration. The table starts small and doubles whenever an
+ * iteration fills it, up to what the memory budget holds, so small levels
+ * never pay for a large one.
+ *
+ * The table is keyed by the 64-bit Zobrist hash alone, so a collision could
+ * in principle prune a live state; with tables of a few million entries that
+ * is vanishingly rare.
+ */
+class IdaStarSearch {
+  private static final int FOUND = -1;
+  private static final int INFINITY = Integer.MAX_VALUE;
+  // Key, cost and iteration per entry
+  static final int BYTES_PER_ENTRY = 16;
+  // 256 MB of table; past that, more entries rarely pay for the allocation
+  private static final int MAX_ENTRIES = 1 << 24;
+  private static final int MIN_ENTRIES = 1 << 12;
+
+  private final Expander expander;
+  private final SolverTrace trace;
+  private final int maxCapacity;
+  private long[] tableKeys;
+  private int[] tableCosts;
+  private int[] tableIterations;
+  private int tableMask;
+  // Slots written during this iteration
+  private int tableUsed;
+  private final List<List<Node>> levels = new ArrayList<>();
+
+  private CancellationToken token;
+  private int iteration = 0;
+  private Node goal;
+  private Node bestNode;
+
+  long nodesExpanded;
+  long nodesGenerated;
+
+  IdaStarSearch(Board board, SolverOptions options, SearchMetrics metrics) {
+    this.expander = new Expander(board, options, metrics);
+    this.trace = new SolverTrace(board, options);
+
+    long entries = Math.max(MIN_ENTRIES, options.memoryBudgetBytes() / BYTES_PER_ENTRY);
+    this.maxCapacity = Integer.highestOneBit((int) Math.min(entries, MAX_ENTRIES));
+    allocate(MIN_ENTRIES);
+  }
+
+  private void allocate(int capacity) {
+    tableKeys = new long[capacity];
+    tableCosts = new int[capacity];
+    tableIterations = new int[capacity];
+    tableMask = capacity - 1;
+    tableUsed = 0;
+  }
+
+  SolverResult solve(char[][] itemsData, CancellationToken token) {
+    this.token = token;
+    expander.prepare(token);
+    Node startNode = expander.initializeStartNode(itemsData);
+    if (startNode.estimate == Heuristic.DEAD) {
+      return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+    }
+    bestNode = startNode;
+
+    int bound = startNode.estimate;
+    while (true) {
+      iteration++;
+      tableUsed = 0;
+      int next = search(startNode, bound, 0);
+      expander.metrics.publish(0, 0, bound);
+      if (next == FOUND) {
+        return new SolverResult(SolverResult.Status.SOLVED, expander.reconstructPath(goal));
+      }
+      if (token.isCancelled()) {
+        trace.dump();
+        return SolverResult.stopped(token, expander.reconstructPath(bestNode));
+      }
+      if (next == INFINITY) {
+        trace.dump();
+        return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+      }
+      if (trace.summary) {
+        trace.message("iteration " + iteration + " done at bound " + bound + ", next " + next);
+      }
+      bound = next;
+    }
+  }
+
+  /**
+   * Returns FOUND, or the smallest cost + estimate that exceeded the bound
+   * below node. A cancelled search unwinds by reporting INFINITY.
+   */
+  private int search(Node node, int bound, int depth) {
+    int total = node.cost + node.estimate;
+    if (total > bound) {
+      return total;
+    }
+    if (expander.isGoalState(node)) {
+      goal = node;
+      return FOUND;
+    }
+    if (token.isCancelled()) {
+      return INFINITY;
+    }
+    if (!admit(node)) {
+      expander.metrics.duplicates++;
+      return INFINITY;
+    }
+    if (node.estimate < bestNode.estimate) {
+      bestNode = node;
+    }
+    if (expander.metrics.due()) {
+      // The path is the open list, and nothing is kept beyond the table
+      expander.metrics.publish(depth, 0, bound);
+    }
+
+    if (trace.expansions) {
+      trace.expanded(node, depth);
+    }
+
+    if (levels.size() == depth) {
+      levels.add(new ArrayList<>(4));
+    }
+    List<Node> children = levels.get(depth);
+    expander.expand(node, children);
+    nodesExpanded++;
+    nodesGenerated += children.size();
+    // Most promising first, so the last iteration finds the goal sooner
+    children.sort(Node.GREEDY);
+
+    int min = INFINITY;
+    for (int i = 0; i < children.size(); i++) {
+      int result = search(children.get(i), bound, depth + 1);
+      if (result == FOUND) {
+        return FOUND;
+      }
+      min = Math.min(min, result);
+    }
+    children.clear();
+    return min;
+  }
+
+  /**
+   * Records node in the transposition table. Returns false when the same
+   * state was already reached at no greater cost during this iteration.
+   */
+  private boolean admit(Node node) {
+    int slot = slot(node.hash);
+    if (tableIterations[slot] == iteration) {
+      if (tableKeys[slot] == node.hash && tableCosts[slot] <= node.cost) {
+        return false;
+      }
+    } else {
+      tableUsed++;
+    }
+    tableKeys[slot] = node.hash;
+    tableCosts[slot] = node.cost;
+    tableIterations[slot] = iteration;
+    if (tableUsed > tableMask - (tableMask >>> 2) && tableMask + 1 < maxCapacity) {
+      grow();
+    }
+    return true;
+  }
+
+  private int slot(long hash) {
+    return (int) (hash ^ (hash >>> 29)) & tableMask;
+  }
+
+  /**
+   * Doubles the table, keeping this iteration's entries; older ones no
+   * longer cut anything off.
+   */
+  private void grow() {
+    long[] keys = tableKeys;
+    int[] costs = tableCosts;
+    int[] iterations = tableIterations;
+    allocate(keys.length * 2);
+    for (int i = 0; i < keys.length; i++) {
+      if (iterations[i] != iteration) {
+        continue;
+      }
+      int slot = slot(keys[i]);
+      if (tableIterations[slot] != iteration) {
+        tableUsed++;
+      } else if (tableCosts[slot] <= costs[i]) {
+        continue;
+      }
+      tableKeys[slot] = keys[i];
+      tableCosts[slot] = costs[i];
+      tableIterations[slot] = iteration;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package solver;
+
+/**
+ * Sum of the grid distances from each crate to its nearest goal, ignoring walls.
+ */
+class ManhattanHeuristic implements Heuristic {
+  private final int[] toNearestGoal;
+
+  ManhattanHeuristic(Board board) {
+    toNearestGoal = new int[board.size];
+    for (int cell = 0; cell < board.size; cell++) {
+      int minDistance = Integer.MAX_VALUE;
+      for (int goal : board.goalCells) {
+        int distance = Math.abs(board.x(cell) - board.x(goal)) + Math.abs(board.y(cell) - board.y(goal));
+        minDistance = Math.min(minDistance, distance);
+      }
+      toNearestGoal[cell] = minDistance;
+    }
+  }
+
+  @Override
+  public int estimate(short[] crates) {
+    int totalDistance = 0;
+    for (short crate : crates) {
+      totalDistance += toNearestGoal[crate];
+    }
+    return totalDistance;
+  }
+}
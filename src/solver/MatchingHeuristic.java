@@ -0,0 +1,180 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost assignment of crates to distinct goals over push distances,
+ * solved with the Hungarian algorithm.
+ *
+ * Unlike the nearest-goal sums, no two crates can claim the same goal, so the
+ * bound is much tighter once crates start to crowd around a few goals. The
+ * solution for the most recent parent layout is kept; a child that moved one
+ * crate is then evaluated by replacing that crate's row and running a single
+ * augmentation, O(n^2) instead of O(n^3).
+ */
+class MatchingHeuristic implements Heuristic {
+  // Large enough to never be a real distance, small enough that sums don't overflow
+  private static final int INF = 1 << 20;
+
+  private final int[][] toGoal;
+  private final int goals;
+
+  // Rows and columns are 1-based; row 0 and column 0 are the algorithm's sentinels
+  private int rows;
+  private int[][] cost = new int[1][];
+  private int[] u = new int[1], v, p, way, minv;
+  private boolean[] used;
+
+  // Solution for the layout in cachedCrates, restored before each incremental update
+  private short[] cachedCrates;
+  private int[] cachedU, cachedV, cachedP;
+  private int[] cachedRow;
+
+  MatchingHeuristic(Board board) {
+    toGoal = board.distances.toGoal;
+    goals = toGoal.length;
+    v = new int[goals + 1];
+    p = new int[goals + 1];
+    way = new int[goals + 1];
+    minv = new int[goals + 1];
+    used = new boolean[goals + 1];
+    cachedV = new int[goals + 1];
+    cachedP = new int[goals + 1];
+    cachedRow = new int[goals + 1];
+  }
+
+  @Override
+  public int estimate(short[] crates) {
+    if (crates.length > goals) {
+      return DEAD;
+    }
+    solve(crates);
+    cachedCrates = null;
+    return total();
+  }
+
+  @Override
+  public int estimate(short[] parentCrates, int index, int cell, short[] crates) {
+    if (crates.length > goals) {
+      return DEAD;
+    }
+    if (crates.length < goals) {
+      // Freed columns would keep non-zero duals, which is only sound for square problems
+      return estimate(crates);
+    }
+    if (parentCrates != cachedCrates) {
+      solve(parentCrates);
+      cachedCrates = parentCrates;
+      System.arraycopy(u, 0, cachedU, 0, u.length);
+      System.arraycopy(v, 0, cachedV, 0, v.length);
+      System.arraycopy(p, 0, cachedP, 0, p.length);
+    } else {
+      System.arraycopy(cachedU, 0, u, 0, cachedU.length);
+      System.arraycopy(cachedV, 0, v, 0, v.length);
+      System.arraycopy(cachedP, 0, p, 0, p.length);
+    }
+
+    int row = index + 1;
+    System.arraycopy(cost[row], 0, cachedRow, 0, cachedRow.length);
+    fillRow(row, cell);
+    for (int j = 1; j <= goals; j++) {
+      if (p[j] == row) {
+        p[j] = 0;
+      }
+    }
+    // Keep the duals feasible for the new row, then re-match just that row
+    int best = INF * 2;
+    for (int j = 1; j <= goals; j++) {
+      best = Math.min(best, cost[row][j] - v[j]);
+    }
+    u[row] = best;
+    augment(row);
+
+    int result = total();
+    // Put the parent's row back so the next sibling starts from the cached state
+    System.arraycopy(cachedRow, 0, cost[row], 0, cachedRow.length);
+    return result;
+  }
+
+  private void solve(short[] crates) {
+    resize(crates.length);
+    for (int i = 1; i <= rows; i++) {
+      fillRow(i, crates[i - 1]);
+    }
+    Arrays.fill(u, 0);
+    Arrays.fill(v, 0);
+    Arrays.fill(p, 0);
+    for (int i = 1; i <= rows; i++) {
+      augment(i);
+    }
+  }
+
+  private void resize(int crateCount) {
+    if (rows != crateCount || cost.length != crateCount + 1) {
+      rows = crateCount;
+      cost = new int[rows + 1][goals + 1];
+      u = new int[rows + 1];
+      cachedU = new int[rows + 1];
+      cachedCrates = null;
+    }
+  }
+
+  private void fillRow(int row, int cell) {
+    for (int j = 1; j <= goals; j++) {
+      int distance = toGoal[j - 1][cell];
+      cost[row][j] = distance == DistanceTables.UNREACHABLE ? INF : distance;
+    }
+  }
+
+  // One phase of the Hungarian algorithm: finds a shortest augmenting path for row i
+  private void augment(int i) {
+    p[0] = i;
+    int j0 = 0;
+    Arrays.fill(minv, Integer.MAX_VALUE);
+    Arrays.fill(used, false);
+    do {
+      used[j0] = true;
+      int i0 = p[j0], delta = Integer.MAX_VALUE, j1 = 0;
+      for (int j = 1; j <= goals; j++) {
+        if (!used[j]) {
+          int cur = cost[i0][j] - u[i0] - v[j];
+          if (cur < minv[j]) {
+            minv[j] = cur;
+            way[j] = j0;
+          }
+          if (minv[j] < delta) {
+            delta = minv[j];
+            j1 = j;
+          }
+        }
+      }
+      for (int j = 0; j <= goals; j++) {
+        if (used[j]) {
+          u[p[j]] += delta;
+          v[j] -= delta;
+        } else {
+          minv[j] -= delta;
+        }
+      }
+      j0 = j1;
+    } while (p[j0] != 0);
+    do {
+      int j1 = way[j0];
+      p[j0] = p[j1];
+      j0 = j1;
+    } while (j0 != 0);
+  }
+
+  private int total() {
+    int sum = 0;
+    for (int j = 1; j <= goals; j++) {
+      if (p[j] != 0) {
+        if (cost[p[j]][j] >= INF) {
+          return DEAD;
+        }
+        sum += cost[p[j]][j];
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,113 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+class Node {
+  // A node, its crate array and its hash map entry on a 64-bit heap, roughly; the crates add 2 bytes each
+  private static final int BYTES_ON_HEAP = 128;
+
+  // Lowest estimated total first, ties broken toward nodes closer to the goal
+  static final Comparator<Node> BEST_FIRST =
+      Comparator.comparingInt((Node node) -> node.cost + node.estimate).thenComparingInt(node -> node.estimate);
+  static final Comparator<Node> GREEDY =
+      Comparator.comparingInt((Node node) -> node.estimate).thenComparingInt(node -> node.cost);
+  static final Comparator<Node> BREADTH_FIRST = Comparator.comparingInt(node -> node.cost);
+
+  static Comparator<Node> ordering(SolverOptions.Strategy strategy) {
+    switch (strategy) {
+      case GREEDY:
+        return GREEDY;
+      case BREADTH_FIRST:
+        return BREADTH_FIRST;
+      default:
+        return BEST_FIRST;
+    }
+  }
+
+  // Crate cells in ascending order, shared between nodes that only differ by player position
+  final short[] crates;
+  // Where the player actually stands, and the cell that identifies the state: the player
+  // cell itself when searching moves, the smallest reachable cell when searching pushes
+  final int player, region;
+  final long hash;
+  // Index into Board.MOVES of the step or push that produced this node
+  byte direction = -1;
+  // Pushes made in that direction, more than one when a tunnel macro carried the crate along
+  short pushes = 1;
+  // Packed crate count * 4 + direction when the step ended with a goal room fill, otherwise -1
+  short fill = -1;
+  int cost;
+  // Heuristic value, computed once when the node is generated
+  int estimate;
+  Node parent;
+
+  Node(short[] crates, int player, int region, long hash) {
+    this.crates = crates;
+    this.player = player;
+    this.region = region;
+    this.hash = hash;
+    this.parent = null;
+    this.cost = 0;
+  }
+
+  /**
+   * How many nodes a search that keeps them in hash maps may hold under
+   * options: as many as the memory budget fits, or SolverOptions.maxStates
+   * if that is lower.
+   */
+  static long capacity(SolverOptions options, int crateCount) {
+    long capacity = options.memoryBudgetBytes() / (BYTES_ON_HEAP + 2 * crateCount);
+    if (options.maxStates > 0) {
+      capacity = Math.min(capacity, options.maxStates);
+    }
+    return capacity;
+  }
+
+  boolean hasCrate(int cell) {
+    return indexOfCrate(cell) >= 0;
+  }
+
+  int indexOfCrate(int cell) {
+    return Arrays.binarySearch(crates, (short) cell);
+  }
+
+  /**
+   * Returns a copy of the crate array with the crate at index moved to cell,
+   * keeping the array sorted by shifting only the elements in between.
+   */
+  short[] moveCrate(int index, int cell) {
+    short[] moved = crates.clone();
+    int i = index;
+    while (i > 0 && moved[i - 1] > cell) {
+      moved[i] = moved[i - 1];
+      i--;
+    }
+    while (i < moved.length - 1 && moved[i + 1] < cell) {
+      moved[i] = moved[i + 1];
+      i++;
+    }
+    moved[i] = (short) cell;
+    return moved;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true; // check if same instance
+    if (o == null || getClass() != o.getClass())
+      return false;
+
+    Node node = (Node) o;
+
+    if (hash != node.hash || region != node.region)
+      return false;
+
+    return crates == node.crates || Arrays.equals(crates, node.crates);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
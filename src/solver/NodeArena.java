@@ -0,0 +1,306 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Every state the sequential search has reached, as fixed-size records
+ * instead of Node objects: per state its hash, player, region, parent,
+ * cost, estimate, the step that produced it and its crate cells. States are
+ * referred to by index, and an open-addressed table of indexes finds a
+ * state again from its crates and region.
+ *
+ * Records and table live in blocks allocated according to
+ * SolverOptions.stateStorage: heap buffers, direct buffers the garbage
+ * collector never scans, or memory-mapped files that the OS can page out
+ * when the states outgrow memory. Records are appended in the order states
+ * are reached, so the blocks of early, long-closed layers are the ones that
+ * go cold and get paged out first. Per state this comes to 34 bytes plus
+ * two per crate, and eight more in the table. Nodes are only built for the
+ * state being expanded and, at the end, for the path to the goal.
+ */
+class NodeArena {
+  // Record layout
+  private static final int HASH = 0;
+  private static final int PLAYER = 8;
+  private static final int REGION = 12;
+  private static final int PARENT = 16;
+  private static final int COST = 20;
+  private static final int ESTIMATE = 24;
+  private static final int PUSHES = 28;
+  private static final int FILL = 30;
+  private static final int DIRECTION = 32;
+  private static final int CLOSED = 33;
+  private static final int CRATES = 34;
+
+  // Rough heap cost of one state in the arena and the open list, before two bytes per crate
+  private static final int BYTES_PER_STATE = 64;
+
+  // Records or table slots per block
+  private static final int BLOCK_SHIFT = 16;
+  private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+  private final int crateCount;
+  private final int recordSize;
+  private final long recordBlockBytes;
+  private final SolverOptions.StateStorage storage;
+  private final File spillDirectory;
+  private int size;
+
+  private ByteBuffer[] records = new ByteBuffer[16];
+  private int recordBlocks;
+  // State index + 1 per slot, 0 when empty
+  private ByteBuffer[] table;
+  private long tableLength;
+
+  NodeArena(int crateCount, SolverOptions options) {
+    this.crateCount = crateCount;
+    this.recordSize = CRATES + 2 * crateCount;
+    this.recordBlockBytes = (long) recordSize << BLOCK_SHIFT;
+    // Buffers and the offsets into them are ints
+    if (recordBlockBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(crateCount + " crates make " + recordBlockBytes + " byte record blocks");
+    }
+    this.storage = options.stateStorage;
+    this.spillDirectory = options.spillDirectory;
+    this.table = allocateTable(1L << 12);
+  }
+
+  /**
+   * How many states a search may keep under options: SolverOptions.maxStates
+   * if set, and on the heap no more than the memory budget holds.
+   */
+  static long capacity(SolverOptions options, int crateCount) {
+    long capacity = Long.MAX_VALUE;
+    if (options.stateStorage == SolverOptions.StateStorage.HEAP) {
+      capacity = options.memoryBudgetBytes() / (BYTES_PER_STATE + 2 * crateCount);
+    }
+    if (options.maxStates > 0) {
+      capacity = Math.min(capacity, options.maxStates);
+    }
+    return capacity;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * The index of the state node is in, or -1 if it has not been added.
+   */
+  int find(Node node) {
+    long mask = tableLength - 1;
+    for (long slot = slot(node.hash); ; slot = (slot + 1) & mask) {
+      int index = tableSlot(slot) - 1;
+      if (index < 0) {
+        return -1;
+      }
+      ByteBuffer block = records[index >>> BLOCK_SHIFT];
+      int offset = (index & BLOCK_MASK) * recordSize;
+      if (block.getLong(offset + HASH) == node.hash && block.getInt(offset + REGION) == node.region
+          && sameCrates(block, offset, node.crates)) {
+        return index;
+      }
+    }
+  }
+
+  /**
+   * Stores node as a new state reached from parent (-1 for the start) and
+   * returns its index.
+   */
+  int add(Node node, int parent) {
+    if ((size >>> BLOCK_SHIFT) == recordBlocks) {
+      if (recordBlocks == records.length) {
+        records = Arrays.copyOf(records, recordBlocks * 2);
+      }
+      records[recordBlocks++] = allocate(recordBlockBytes);
+    }
+    if (size * 2L >= tableLength) {
+      rehash(tableLength * 2);
+    }
+    int index = size++;
+    ByteBuffer block = records[index >>> BLOCK_SHIFT];
+    int offset = (index & BLOCK_MASK) * recordSize;
+    block.putLong(offset + HASH, node.hash);
+    block.putInt(offset + REGION, node.region);
+    for (int i = 0; i < crateCount; i++) {
+      block.putShort(offset + CRATES + 2 * i, node.crates[i]);
+    }
+    set(index, node, parent);
+    block.put(offset + CLOSED, (byte) 0);
+    insert(index, node.hash);
+    return index;
+  }
+
+  /**
+   * Points an existing state at a cheaper way of reaching it, reopening it
+   * if it was already expanded.
+   */
+  void update(int index, Node node, int parent) {
+    set(index, node, parent);
+    records[index >>> BLOCK_SHIFT].put((index & BLOCK_MASK) * recordSize + CLOSED, (byte) 0);
+  }
+
+  void close(int index) {
+    records[index >>> BLOCK_SHIFT].put((index & BLOCK_MASK) * recordSize + CLOSED, (byte) 1);
+  }
+
+  boolean isClosed(int index) {
+    return records[index >>> BLOCK_SHIFT].get((index & BLOCK_MASK) * recordSize + CLOSED) != 0;
+  }
+
+  private void set(int index, Node node, int parent) {
+    ByteBuffer block = records[index >>> BLOCK_SHIFT];
+    int offset = (index & BLOCK_MASK) * recordSize;
+    // A cheaper path may leave the player elsewhere in the same region
+    block.putInt(offset + PLAYER, node.player);
+    block.putInt(offset + PARENT, parent);
+    block.putInt(offset + COST, node.cost);
+    block.putInt(offset + ESTIMATE, node.estimate);
+    block.put(offset + DIRECTION, node.direction);
+    block.putShort(offset + PUSHES, node.pushes);
+    block.putShort(offset + FILL, node.fill);
+  }
+
+  int cost(int index) {
+    return records[index >>> BLOCK_SHIFT].getInt((index & BLOCK_MASK) * recordSize + COST);
+  }
+
+  int estimate(int index) {
+    return records[index >>> BLOCK_SHIFT].getInt((index & BLOCK_MASK) * recordSize + ESTIMATE);
+  }
+
+  private int parent(int index) {
+    return records[index >>> BLOCK_SHIFT].getInt((index & BLOCK_MASK) * recordSize + PARENT);
+  }
+
+  /**
+   * A free-standing Node for the state at index, without its parent.
+   */
+  Node node(int index) {
+    ByteBuffer block = records[index >>> BLOCK_SHIFT];
+    int offset = (index & BLOCK_MASK) * recordSize;
+    short[] cells = new short[crateCount];
+    for (int i = 0; i < crateCount; i++) {
+      cells[i] = block.getShort(offset + CRATES + 2 * i);
+    }
+    Node node = new Node(cells, block.getInt(offset + PLAYER), block.getInt(offset + REGION),
+        block.getLong(offset + HASH));
+    node.cost = block.getInt(offset + COST);
+    node.estimate = block.getInt(offset + ESTIMATE);
+    node.direction = block.get(offset + DIRECTION);
+    node.pushes = block.getShort(offset + PUSHES);
+    node.fill = block.getShort(offset + FILL);
+    return node;
+  }
+
+  /**
+   * The state at index as a Node whose parent chain runs back to the start,
+   * built by one backward walk over the parent indexes.
+   */
+  Node path(int index) {
+    int length = 0;
+    for (int i = index; i >= 0; i = parent(i)) {
+      length++;
+    }
+    Node[] chain = new Node[length];
+    for (int i = index, k = length - 1; i >= 0; i = parent(i), k--) {
+      chain[k] = node(i);
+    }
+    for (int k = 1; k < length; k++) {
+      chain[k].parent = chain[k - 1];
+    }
+    return chain[length - 1];
+  }
+
+  /**
+   * Drops every block. Direct and mapped memory goes back to the OS once
+   * the buffers are collected.
+   */
+  void clear() {
+    records = new ByteBuffer[16];
+    recordBlocks = 0;
+    table = new ByteBuffer[0];
+    tableLength = 0;
+    size = 0;
+  }
+
+  private boolean sameCrates(ByteBuffer block, int offset, short[] cells) {
+    for (int i = 0; i < crateCount; i++) {
+      if (block.getShort(offset + CRATES + 2 * i) != cells[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long slot(long hash) {
+    return ((hash * 0x9E3779B97F4A7C15L) >>> 24) & (tableLength - 1);
+  }
+
+  private int tableSlot(long slot) {
+    return table[(int) (slot >>> BLOCK_SHIFT)].getInt((int) (slot & BLOCK_MASK) * 4);
+  }
+
+  private void insert(int index, long hash) {
+    long mask = tableLength - 1;
+    long slot = slot(hash);
+    while (tableSlot(slot) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[(int) (slot >>> BLOCK_SHIFT)].putInt((int) (slot & BLOCK_MASK) * 4, index + 1);
+  }
+
+  private void rehash(long length) {
+    table = allocateTable(length);
+    for (int index = 0; index < size; index++) {
+      insert(index, records[index >>> BLOCK_SHIFT].getLong((index & BLOCK_MASK) * recordSize + HASH));
+    }
+  }
+
+  private ByteBuffer[] allocateTable(long length) {
+    tableLength = length;
+    int slotsPerBlock = (int) Math.min(length, 1 << BLOCK_SHIFT);
+    ByteBuffer[] blocks = new ByteBuffer[(int) (length / slotsPerBlock)];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = allocate(slotsPerBlock * 4L);
+    }
+    return blocks;
+  }
+
+  // A zeroed block of the given size in the configured storage
+  private ByteBuffer allocate(long bytes) {
+    switch (storage) {
+      case OFF_HEAP:
+        return ByteBuffer.allocateDirect((int) bytes);
+      case DISK:
+        return map(bytes);
+      default:
+        return ByteBuffer.allocate((int) bytes);
+    }
+  }
+
+  private ByteBuffer map(long bytes) {
+    File directory = spillDirectory != null ? spillDirectory : new File(System.getProperty("java.io.tmpdir"));
+    try {
+      directory.mkdirs();
+      File file = File.createTempFile("states", ".bin", directory);
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+        raf.setLength(bytes);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+      } finally {
+        // The mapping outlives the file's name; where it cannot be removed yet, remove it at exit
+        if (!file.delete()) {
+          file.deleteOnExit();
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-distributed best-first search over several worker threads.
+ *
+ * Every state has an owning worker picked from its Zobrist hash. Generated
+ * nodes record their cost in a shared concurrent table, and are mailed to
+ * their owner's inbox when they improve on it; each worker keeps its own open
+ * list and Expander, so the only shared structures are the table, the
+ * inboxes and a few counters. A goal found by one worker becomes the incumbent; workers keep
+ * expanding only nodes that could still beat it, and the search ends once
+ * nothing is pending anywhere. If it is stopped first, the line to the node
+ * with the lowest estimate any worker expanded is returned.
+ *
+ * The table keeps every node and its parent chain alive, so the workers stop
+ * once it outgrows the memory budget, or the heap runs out, and the caller
+ * falls back to IDA*.
+ */
+class ParallelSearch {
+  private final Board board;
+  private final SolverOptions options;
+  private final int threads;
+  private final List<SearchMetrics> workerMetrics = new ArrayList<>();
+
+  // Best cost seen so far for each state
+  private final ConcurrentHashMap<Node, Integer> visited = new ConcurrentHashMap<>();
+  private final List<ConcurrentLinkedQueue<Node>> inboxes = new ArrayList<>();
+  // Nodes sitting in an inbox or open list, or being expanded; zero means the space is exhausted
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicReference<Node> solution = new AtomicReference<>();
+  // Expanded node with the lowest estimate, for the partial line
+  private final AtomicReference<Node> closest = new AtomicReference<>();
+  private volatile int incumbentCost = Integer.MAX_VALUE;
+  private volatile boolean overBudget = false;
+  private long nodeBudget;
+
+  final LongAdder nodesExpanded = new LongAdder();
+  final LongAdder nodesGenerated = new LongAdder();
+
+  ParallelSearch(Board board, SolverOptions options, SearchMetrics metrics) {
+    this.board = board;
+    this.options = options;
+    this.threads = Math.max(1, options.threads);
+    for (int i = 0; i < threads; i++) {
+      inboxes.add(new ConcurrentLinkedQueue<>());
+      SearchMetrics worker = new SearchMetrics();
+      workerMetrics.add(worker);
+      metrics.addPart(worker);
+    }
+  }
+
+  /**
+   * Solves until the space is exhausted or token stops it. Returns null when
+   * the table outgrew the memory budget without any solution, so the caller
+   * can fall back to a search with fixed memory.
+   */
+  SolverResult solve(char[][] itemsData, CancellationToken token) {
+    Expander expander = new Expander(board, options);
+    expander.prepare(token);
+    Node startNode = expander.initializeStartNode(itemsData);
+    if (startNode.estimate == Heuristic.DEAD) {
+      return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+    }
+    nodeBudget = Node.capacity(options, startNode.crates.length);
+    visited.put(startNode, 0);
+    closest.set(startNode);
+    send(startNode);
+
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int id = i;
+      workers[i] = new Thread(() -> work(id, token), "sokobot-worker-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+    boolean interrupted = false;
+    for (Thread worker : workers) {
+      // The table is cleared below, so every worker must be gone first
+      while (worker.isAlive()) {
+        try {
+          worker.join();
+        } catch (InterruptedException ex) {
+          token.cancel();
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Node goal = solution.get();
+    visited.clear();
+    for (ConcurrentLinkedQueue<Node> inbox : inboxes) {
+      inbox.clear();
+    }
+    if (goal != null) {
+      // The incumbent is valid even if the proof of optimality was cut short
+      return new SolverResult(SolverResult.Status.SOLVED, expander.reconstructPath(goal));
+    }
+    if (token.isCancelled()) {
+      return SolverResult.stopped(token, expander.reconstructPath(closest.get()));
+    }
+    if (overBudget) {
+      return null;
+    }
+    return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+  }
+
+  private void work(int id, CancellationToken token) {
+    SearchMetrics metrics = workerMetrics.get(id);
+    try {
+      search(id, token, metrics);
+    } catch (OutOfMemoryError ex) {
+      // The budget estimate was too generous for this heap
+      overBudget = true;
+    } finally {
+      metrics.publish(0, visited.size(), -1);
+    }
+  }
+
+  private void search(int id, CancellationToken token, SearchMetrics metrics) {
+    Expander expander = new Expander(board, options, metrics);
+    expander.prepare(token);
+    ConcurrentLinkedQueue<Node> inbox = inboxes.get(id);
+    PriorityQueue<Node> open = new PriorityQueue<>(Node.ordering(options.strategy));
+    List<Node> neighbors = new ArrayList<>(4);
+    Node best = closest.get();
+
+    while (!token.isCancelled() && !overBudget) {
+      for (Node mail = inbox.poll(); mail != null; mail = inbox.poll()) {
+        open.add(mail);
+      }
+
+      Node currentNode = open.poll();
+      if (currentNode == null) {
+        if (pending.get() == 0) {
+          break;
+        }
+        LockSupport.parkNanos(20_000);
+        continue;
+      }
+
+      if (currentNode.cost + currentNode.estimate >= incumbentCost
+          || currentNode.cost > visited.get(currentNode)) {
+        pending.decrementAndGet();
+        continue;
+      }
+      if (expander.isGoalState(currentNode)) {
+        offerSolution(currentNode);
+        pending.decrementAndGet();
+        continue;
+      }
+
+      if (currentNode.estimate < best.estimate) {
+        best = currentNode;
+      }
+      if (visited.mappingCount() > nodeBudget) {
+        overBudget = true;
+        break;
+      }
+      expander.expand(currentNode, neighbors);
+      nodesGenerated.add(neighbors.size());
+      for (Node neighbor : neighbors) {
+        if (improves(neighbor)) {
+          send(neighbor);
+        } else {
+          metrics.duplicates++;
+        }
+      }
+      nodesExpanded.increment();
+      if (metrics.due()) {
+        metrics.publish(open.size(), visited.size(), currentNode.cost + currentNode.estimate);
+      }
+      // Children are counted before the parent is released, so pending only hits zero when done
+      pending.decrementAndGet();
+    }
+    offerClosest(best);
+  }
+
+  private boolean improves(Node node) {
+    Integer best = visited.putIfAbsent(node, node.cost);
+    while (best != null && node.cost < best) {
+      if (visited.replace(node, best, node.cost)) {
+        return true;
+      }
+      best = visited.get(node);
+    }
+    return best == null;
+  }
+
+  private void offerSolution(Node goal) {
+    Node best = solution.get();
+    while ((best == null || goal.cost < best.cost) && !solution.compareAndSet(best, goal)) {
+      best = solution.get();
+    }
+    incumbentCost = solution.get().cost;
+  }
+
+  private void offerClosest(Node node) {
+    Node best = closest.get();
+    while (node.estimate < best.estimate && !closest.compareAndSet(best, node)) {
+      best = closest.get();
+    }
+  }
+
+  private void send(Node node) {
+    pending.incrementAndGet();
+    inboxes.get(owner(node)).add(node);
+  }
+
+  private int owner(Node node) {
+    return (int) ((node.hash >>> 1) % threads);
+  }
+}
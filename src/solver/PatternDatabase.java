@@ -0,0 +1,371 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Exact push counts for every placement of a small group of crates (a
+ * pattern) on one map, ignoring all other crates.
+ *
+ * The table is filled by a breadth-first search of pulls backward from every
+ * way the group can sit on goals, so an entry is the fewest pushes that
+ * bring those crates onto distinct goals from the best player position.
+ * Pushes on one crate never count for another, so the entries of disjoint
+ * patterns add up to a lower bound on the whole layout. An entry of
+ * UNSOLVABLE means the group can never be solved, even alone.
+ *
+ * Only live cells (those some goal can be reached from) are indexed, and a
+ * group of cells i0 < i1 < ... is stored at C(i0, 1) + C(i1, 2) + ..., one
+ * byte per group. Tables can be written to a file and memory-mapped back;
+ * the file starts with "SKPD", a version, the map's fingerprint, the
+ * pattern size and the live cell count.
+ */
+class PatternDatabase {
+  static final int UNSOLVABLE = 255;
+  // Largest pattern size accepted; lookups per estimate grow with the crate count to this power
+  static final int MAX_SIZE = 4;
+  // 256 MB of table; a bigger one would take far longer to build than a search has
+  private static final long MAX_ENTRIES = 1 << 28;
+  private static final int MAGIC = 0x534b5044;
+  private static final int VERSION = 1;
+  private static final int HEADER = 24;
+
+  final int size;
+  // Live cell number per board cell, or -1
+  final int[] liveIndex;
+  private final int liveCount;
+  private final int[][] binomial;
+  private final ByteBuffer values;
+
+  private PatternDatabase(Board board, int size, ByteBuffer values) {
+    this.size = size;
+    this.liveIndex = new int[board.size];
+    int count = 0;
+    for (int cell = 0; cell < board.size; cell++) {
+      boolean live = !board.walls[cell] && board.distances.toNearestGoal[cell] != DistanceTables.UNREACHABLE;
+      liveIndex[cell] = live ? count++ : -1;
+    }
+    this.liveCount = count;
+    this.binomial = new int[count + 1][size + 1];
+    for (int n = 0; n <= count; n++) {
+      binomial[n][0] = 1;
+      for (int k = 1; k <= Math.min(n, size); k++) {
+        binomial[n][k] = binomial[n - 1][k - 1] + (k <= n - 1 ? binomial[n - 1][k] : 0);
+      }
+    }
+    this.values = values;
+  }
+
+  /**
+   * The table for board, from a file in directory if one matches, otherwise
+   * built now (unless build is false) and, when directory is set, saved there
+   * for next time. Patterns are capped at the number of goals. Returns null
+   * when there is no saved table and none may be built, or when the table
+   * would be too big for this board.
+   */
+  static PatternDatabase forBoard(Board board, int size, File directory, boolean build) {
+    if (size < 1 || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Pattern size " + size + " is not between 1 and " + MAX_SIZE);
+    }
+    size = Math.min(size, board.goalCells.length);
+    if (entries(board, size) > MAX_ENTRIES) {
+      return null;
+    }
+    if (directory == null) {
+      return build ? build(board, size) : null;
+    }
+    File file = new File(directory, fileName(board, size));
+    if (file.isFile()) {
+      try {
+        PatternDatabase loaded = map(board, size, file);
+        if (loaded != null) {
+          return loaded;
+        }
+      } catch (IOException ex) {
+        ex.printStackTrace(System.err);
+      }
+    }
+    if (!build) {
+      return null;
+    }
+    PatternDatabase built = build(board, size);
+    try {
+      directory.mkdirs();
+      built.write(board, file);
+    } catch (IOException ex) {
+      ex.printStackTrace(System.err);
+    }
+    return built;
+  }
+
+  static String fileName(Board board, int size) {
+    return String.format("%016x-%d.pdb", fingerprint(board), size);
+  }
+
+  /**
+   * Pushes needed for the crates on the given live cell numbers, which must
+   * be in ascending order and number exactly size.
+   */
+  int cost(int[] cells) {
+    int index = 0;
+    for (int k = 0; k < size; k++) {
+      index += binomial[cells[k]][k + 1];
+    }
+    return values.get(HEADER + index) & 0xff;
+  }
+
+  private int entries() {
+    return binomial[liveCount][size];
+  }
+
+  // The table length for board, without the int overflow the binomial table would hit
+  private static long entries(Board board, int size) {
+    int live = 0;
+    for (int cell = 0; cell < board.size; cell++) {
+      if (!board.walls[cell] && board.distances.toNearestGoal[cell] != DistanceTables.UNREACHABLE) {
+        live++;
+      }
+    }
+    return choose(live, size);
+  }
+
+  static long choose(int n, int k) {
+    long result = 1;
+    for (int i = 0; i < k; i++) {
+      result = result * (n - i) / (i + 1);
+    }
+    return Math.max(0, result);
+  }
+
+  static PatternDatabase build(Board board, int size) {
+    PatternDatabase empty = new PatternDatabase(board, size, null);
+    byte[] table = new byte[HEADER + empty.entries()];
+    Arrays.fill(table, HEADER, table.length, (byte) UNSOLVABLE);
+    PatternDatabase database = new PatternDatabase(board, size, ByteBuffer.wrap(table));
+    if (size > 0) {
+      new Builder(board, database, table).run();
+    }
+    return database;
+  }
+
+  private static PatternDatabase map(Board board, int size, File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      PatternDatabase database = new PatternDatabase(board, size, buffer);
+      if (channel.size() != HEADER + database.entries() || buffer.getInt(0) != MAGIC
+          || buffer.getInt(4) != VERSION || buffer.getLong(8) != fingerprint(board)
+          || buffer.getInt(16) != size || buffer.getInt(20) != database.liveCount) {
+        return null;
+      }
+      return database;
+    }
+  }
+
+  void write(Board board, File file) throws IOException {
+    File partial = new File(file.getPath() + ".tmp");
+    try (RandomAccessFile raf = new RandomAccessFile(partial, "rw"); FileChannel channel = raf.getChannel()) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint(board)).putInt(size).putInt(liveCount);
+      header.flip();
+      channel.write(header);
+      ByteBuffer body = values.duplicate();
+      body.position(HEADER);
+      channel.write(body);
+      raf.setLength(HEADER + entries());
+    }
+    // Readers only ever see complete tables
+    if (!partial.renameTo(file)) {
+      file.delete();
+      if (!partial.renameTo(file)) {
+        throw new IOException("Cannot replace " + file);
+      }
+    }
+  }
+
+  // Walls and goals, which is all a table depends on
+  private static long fingerprint(Board board) {
+    long hash = 0xcbf29ce484222325L;
+    hash = (hash ^ board.width) * 0x100000001b3L;
+    hash = (hash ^ board.height) * 0x100000001b3L;
+    for (int cell = 0; cell < board.size; cell++) {
+      int tile = board.walls[cell] ? 1 : board.goals[cell] ? 2 : 0;
+      hash = (hash ^ tile) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Breadth-first search over pulls from every solved placement. A group's
+   * entry is the depth at which any of its player regions is first reached.
+   */
+  private static class Builder {
+    private final Board board;
+    private final PatternDatabase database;
+    private final byte[] table;
+    private final PlayerReach reach;
+    private final int size;
+    private final int stride;
+
+    // Each queued state is size crate cells followed by the region and the depth
+    private int[] queue = new int[1024];
+    private int head = 0, tail = 0;
+    private long[] seen = new long[1 << 12];
+    private int seenCount = 0;
+    private final int[] liveCells;
+
+    Builder(Board board, PatternDatabase database, byte[] table) {
+      this.board = board;
+      this.database = database;
+      this.table = table;
+      this.reach = new PlayerReach(board);
+      this.size = database.size;
+      this.stride = size + 2;
+      this.liveCells = new int[size];
+    }
+
+    void run() {
+      int[] goals = new int[size];
+      startFrom(goals, 0, 0);
+
+      short[] crates = new short[size];
+      while (head < tail) {
+        for (int k = 0; k < size; k++) {
+          crates[k] = (short) queue[head + k];
+        }
+        int region = queue[head + size];
+        int depth = queue[head + size + 1];
+        head += stride;
+        pull(crates, region, depth + 1);
+      }
+    }
+
+    // Every size-subset of the goals, with the player in each region around it
+    private void startFrom(int[] goals, int first, int k) {
+      if (k == size) {
+        short[] crates = new short[size];
+        for (int i = 0; i < size; i++) {
+          crates[i] = (short) goals[i];
+        }
+        Arrays.sort(crates);
+        boolean[] covered = new boolean[board.size];
+        for (int cell = 0; cell < board.size; cell++) {
+          if (board.walls[cell] || covered[cell] || Arrays.binarySearch(crates, (short) cell) >= 0) {
+            continue;
+          }
+          int region = reach.fill(crates, cell);
+          for (int i = 0; i < reach.count(); i++) {
+            covered[reach.cells()[i]] = true;
+          }
+          visit(crates, region, 0);
+        }
+        return;
+      }
+      for (int g = first; g < board.goalCells.length; g++) {
+        goals[k] = board.goalCells[g];
+        startFrom(goals, g + 1, k + 1);
+      }
+    }
+
+    private void pull(short[] crates, int region, int depth) {
+      reach.fill(crates, region);
+      int[] pulls = reach.pushes;
+      int pullCount = 0;
+      for (int i = 0; i < reach.count(); i++) {
+        int cell = reach.cells()[i];
+        for (int dir = 0; dir < 4; dir++) {
+          int delta = board.deltas[dir];
+          int crate = cell - delta;
+          int behind = cell + delta;
+          if (Arrays.binarySearch(crates, (short) crate) >= 0 && !board.walls[behind]
+              && Arrays.binarySearch(crates, (short) behind) < 0) {
+            pulls[pullCount++] = cell * 4 + dir;
+          }
+        }
+      }
+
+      for (int i = 0; i < pullCount; i++) {
+        int cell = pulls[i] / 4;
+        int delta = board.deltas[pulls[i] % 4];
+        int index = Arrays.binarySearch(crates, (short) (cell - delta));
+        short[] moved = moveCrate(crates, index, cell);
+        int movedRegion = reach.fill(moved, cell + delta);
+        visit(moved, movedRegion, depth);
+      }
+    }
+
+    private static short[] moveCrate(short[] crates, int index, int cell) {
+      short[] moved = crates.clone();
+      moved[index] = (short) cell;
+      Arrays.sort(moved);
+      return moved;
+    }
+
+    private void visit(short[] crates, int region, int depth) {
+      for (int k = 0; k < size; k++) {
+        liveCells[k] = database.liveIndex[crates[k]];
+      }
+      int index = 0;
+      for (int k = 0; k < size; k++) {
+        index += database.binomial[liveCells[k]][k + 1];
+      }
+      long key = (long) index * board.size + region;
+      if (!markSeen(key)) {
+        return;
+      }
+      if ((table[HEADER + index] & 0xff) == UNSOLVABLE) {
+        table[HEADER + index] = (byte) Math.min(depth, UNSOLVABLE - 1);
+      }
+
+      if (tail + stride > queue.length) {
+        if (head > 0) {
+          System.arraycopy(queue, head, queue, 0, tail - head);
+          tail -= head;
+          head = 0;
+        }
+        if (tail + stride > queue.length) {
+          queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+      }
+      for (int k = 0; k < size; k++) {
+        queue[tail++] = crates[k];
+      }
+      queue[tail++] = region;
+      queue[tail++] = depth;
+    }
+
+    // Open-addressed set of state keys, stored plus one so zero marks an empty slot
+    private boolean markSeen(long key) {
+      if (seenCount * 2 >= seen.length) {
+        long[] old = seen;
+        seen = new long[old.length * 2];
+        for (long stored : old) {
+          if (stored != 0) {
+            insert(stored);
+          }
+        }
+      }
+      if (!insert(key + 1)) {
+        return false;
+      }
+      seenCount++;
+      return true;
+    }
+
+    private boolean insert(long stored) {
+      int mask = seen.length - 1;
+      int slot = (int) ((stored * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+      while (seen[slot] != 0) {
+        if (seen[slot] == stored) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+      seen[slot] = stored;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * The larger of two lower bounds: the goal matching, and a sum over disjoint
+ * groups of crates looked up in the map's {@link PatternDatabase}.
+ *
+ * Groups are picked greedily by how much their table entry exceeds the
+ * crates' separate nearest-goal distances; crates left out of every group
+ * count their nearest-goal distance. Any group the table marks unsolvable
+ * makes the whole layout dead. Every group is looked up, so with more than
+ * MAX_GROUPS of them the groups are skipped and only the matching counts.
+ */
+class PatternDatabaseHeuristic implements Heuristic {
+  // Table lookups one estimate may spend
+  static final int MAX_GROUPS = 1 << 14;
+
+  private final MatchingHeuristic matching;
+  private final PatternDatabase patterns;
+  private final int[] toNearestGoal;
+  private final int size;
+
+  // Scratch buffers, grown to the crate count on first use
+  private int[] live = new int[0];
+  private int[] nearest = new int[0];
+  private boolean[] grouped = new boolean[0];
+  // Gain << 32 | group number, and the size members of each group number
+  private long[] candidates = new long[0];
+  private int[] groups = new int[0];
+  private final int[] members;
+  private final int[] cells;
+  private int candidateCount;
+
+  PatternDatabaseHeuristic(Board board, PatternDatabase patterns) {
+    this.matching = new MatchingHeuristic(board);
+    this.patterns = patterns;
+    this.toNearestGoal = board.distances.toNearestGoal;
+    this.size = patterns.size;
+    this.members = new int[size];
+    this.cells = new int[size];
+  }
+
+  @Override
+  public int estimate(short[] crates) {
+    int bound = matching.estimate(crates);
+    return bound == DEAD ? DEAD : combine(bound, crates);
+  }
+
+  @Override
+  public int estimate(short[] parentCrates, int index, int cell, short[] crates) {
+    int bound = matching.estimate(parentCrates, index, cell, crates);
+    return bound == DEAD ? DEAD : combine(bound, crates);
+  }
+
+  private int combine(int bound, short[] crates) {
+    int patternBound = patternBound(crates);
+    return patternBound == DEAD ? DEAD : Math.max(bound, patternBound);
+  }
+
+  private int patternBound(short[] crates) {
+    int n = crates.length;
+    if (live.length < n) {
+      live = new int[n];
+      nearest = new int[n];
+      grouped = new boolean[n];
+    }
+    int total = 0;
+    for (int i = 0; i < n; i++) {
+      // Crates are sorted by cell, so their live numbers come out ascending
+      live[i] = patterns.liveIndex[crates[i]];
+      nearest[i] = toNearestGoal[crates[i]];
+      if (live[i] < 0) {
+        return DEAD;
+      }
+      total += nearest[i];
+      grouped[i] = false;
+    }
+    if (size < 2 || n < size || PatternDatabase.choose(n, size) > MAX_GROUPS) {
+      return total;
+    }
+
+    candidateCount = 0;
+    if (!collect(n, 0, 0)) {
+      return DEAD;
+    }
+    Arrays.sort(candidates, 0, candidateCount);
+    for (int c = candidateCount - 1; c >= 0; c--) {
+      long candidate = candidates[c];
+      int group = (int) candidate * size;
+      boolean free = true;
+      for (int k = 0; k < size && free; k++) {
+        free = !grouped[groups[group + k]];
+      }
+      if (free) {
+        for (int k = 0; k < size; k++) {
+          grouped[groups[group + k]] = true;
+        }
+        total += (int) (candidate >>> 32);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Looks up every group of size crates and records those whose entry
+   * beats their separate distances. Returns false as soon as a group is
+   * unsolvable.
+   */
+  private boolean collect(int n, int first, int depth) {
+    if (depth == size) {
+      int gain = 0;
+      for (int k = 0; k < size; k++) {
+        cells[k] = live[members[k]];
+        gain -= nearest[members[k]];
+      }
+      int cost = patterns.cost(cells);
+      if (cost == PatternDatabase.UNSOLVABLE) {
+        return false;
+      }
+      gain += cost;
+      if (gain > 0) {
+        if (candidateCount == candidates.length) {
+          candidates = Arrays.copyOf(candidates, Math.max(16, candidateCount * 2));
+          groups = Arrays.copyOf(groups, candidates.length * size);
+        }
+        System.arraycopy(members, 0, groups, candidateCount * size, size);
+        candidates[candidateCount] = ((long) gain << 32) | candidateCount;
+        candidateCount++;
+      }
+      return true;
+    }
+    for (int i = first; i < n; i++) {
+      members[depth] = i;
+      if (!collect(n, i + 1, depth + 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,229 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Flood fill of the cells the player can walk to without pushing anything.
+ *
+ * The fill works on bitboards, one bit per cell of the linearized grid: the
+ * reached set grows by shifting it one cell in each direction and masking
+ * with the free floor, until it stops changing. Since a row is stride cells
+ * long, up and down are shifts by stride; the ring of walls keeps shifts
+ * from wrapping between rows. Crates that can be pushed in a direction come
+ * out of the same kind of word operations.
+ *
+ * Walks still run a breadth-first search, whose buffers are allocated once
+ * per board and reused: a cell is reached when its mark equals the current
+ * generation, so a new walk never needs to clear the array.
+ */
+class PlayerReach {
+  final Board board;
+  // Scratch space for callers collecting (crate, direction) pairs while a fill is live
+  final int[] pushes;
+  private final int words;
+  // Bitboards for the last fill: its crates, the free floor around them, and the reached cells
+  private final long[] crateBits;
+  private final long[] free;
+  private final long[] reached;
+  private final long[] pushable;
+  // Reached cells as a list, built from the bits on first request after a fill
+  private final int[] cells;
+  private boolean listed;
+  private int count = 0;
+
+  private final int[] queue;
+  private final int[] marks;
+  private final byte[] via;
+  private int generation = 0;
+  private int tail = 0;
+
+  PlayerReach(Board board) {
+    this.board = board;
+    this.words = board.floorBits.length;
+    this.crateBits = new long[words];
+    this.free = new long[words];
+    this.reached = new long[words];
+    this.pushable = new long[words];
+    this.cells = new int[board.size];
+    this.queue = new int[board.size];
+    this.marks = new int[board.size];
+    this.via = new byte[board.size];
+    this.pushes = new int[board.size * 4];
+  }
+
+  /**
+   * Marks every cell reachable from start and returns the smallest one, which
+   * serves as the canonical name of the player's region.
+   */
+  int fill(short[] crates, int start) {
+    Arrays.fill(crateBits, 0);
+    for (short crate : crates) {
+      crateBits[crate >>> 6] |= 1L << crate;
+    }
+    for (int i = 0; i < words; i++) {
+      free[i] = board.floorBits[i] & ~crateBits[i];
+    }
+    Arrays.fill(reached, 0);
+    reached[start >>> 6] |= 1L << start;
+
+    // Sweeps up then down the words, updating in place so one sweep can carry
+    // the fill across many rows
+    boolean growing = true;
+    while (growing) {
+      growing = false;
+      for (int i = 0; i < words; i++) {
+        growing |= grow(i);
+      }
+      for (int i = words - 1; i >= 0; i--) {
+        growing |= grow(i);
+      }
+    }
+
+    listed = false;
+    count = 0;
+    for (int i = 0; i < words; i++) {
+      count += Long.bitCount(reached[i]);
+    }
+    for (int i = 0; i < words; i++) {
+      if (reached[i] != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(reached[i]);
+      }
+    }
+    return start;
+  }
+
+  // Adds to word i of the fill from its neighbours, then floods within the word until it stops
+  private boolean grow(int i) {
+    int stride = board.stride;
+    long before = reached[i];
+    long bits = (before | shifted(reached, i, 1) | shifted(reached, i, -1)
+        | shifted(reached, i, stride) | shifted(reached, i, -stride)) & free[i];
+    int vertical = stride < 64 ? stride : 0;
+    for (long last = 0; bits != last; ) {
+      last = bits;
+      bits |= ((bits << 1) | (bits >>> 1) | (bits << vertical) | (bits >>> vertical)) & free[i];
+    }
+    reached[i] = bits;
+    return bits != before;
+  }
+
+  /**
+   * Word i of bits moved n cells toward higher indexes, or lower ones when n
+   * is negative.
+   */
+  static long shifted(long[] bits, int i, int n) {
+    int words = bits.length;
+    if (n > 0) {
+      int j = i - (n >>> 6);
+      int shift = n & 63;
+      long high = j >= 0 ? bits[j] << shift : 0;
+      long low = shift != 0 && j >= 1 ? bits[j - 1] >>> (64 - shift) : 0;
+      return high | low;
+    }
+    n = -n;
+    int j = i + (n >>> 6);
+    int shift = n & 63;
+    long low = j < words ? bits[j] >>> shift : 0;
+    long high = shift != 0 && j + 1 < words ? bits[j + 1] << (64 - shift) : 0;
+    return high | low;
+  }
+
+  boolean reached(int cell) {
+    return (reached[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  /**
+   * Crates of the last fill that the player can push in direction dir onto
+   * a free cell, as a bitboard. Valid until the next call.
+   */
+  long[] pushable(int dir) {
+    int delta = board.deltas[dir];
+    for (int i = 0; i < words; i++) {
+      pushable[i] = shifted(reached, i, delta) & crateBits[i] & shifted(free, i, -delta);
+    }
+    return pushable;
+  }
+
+  /**
+   * Cells reached by the last fill, in ascending order. Only the first
+   * {@link #count()} entries are valid.
+   */
+  int[] cells() {
+    if (!listed) {
+      int n = 0;
+      for (int i = 0; i < words; i++) {
+        for (long bits = reached[i]; bits != 0; bits &= bits - 1) {
+          cells[n++] = (i << 6) + Long.numberOfTrailingZeros(bits);
+        }
+      }
+      listed = true;
+    }
+    return cells;
+  }
+
+  int count() {
+    return count;
+  }
+
+  /**
+   * Returns the shortest walk from `from` to `to` as a udlr string, or null
+   * if the player cannot get there.
+   */
+  String walk(short[] crates, int from, int to) {
+    begin(from);
+    for (int head = 0; head < tail && !marked(to); head++) {
+      expand(crates, queue[head]);
+    }
+    if (!marked(to)) {
+      return null;
+    }
+
+    int length = 0;
+    for (int cell = to; cell != from; cell -= board.deltas[via[cell]]) {
+      length++;
+    }
+    char[] moves = new char[length];
+    for (int cell = to; cell != from; cell -= board.deltas[via[cell]]) {
+      moves[--length] = Board.MOVES[via[cell]];
+    }
+    return new String(moves);
+  }
+
+  /**
+   * walk, for a step a search has already taken: a missing walk means the
+   * path is broken, so it throws instead of letting a bad line through.
+   */
+  String stepWalk(short[] crates, int from, int to) {
+    String walk = walk(crates, from, to);
+    if (walk == null) {
+      throw new IllegalStateException("No walk from cell " + from + " to cell " + to);
+    }
+    return walk;
+  }
+
+  private boolean marked(int cell) {
+    return marks[cell] == generation;
+  }
+
+  private void begin(int start) {
+    if (++generation == 0) {
+      Arrays.fill(marks, 0);
+      generation = 1;
+    }
+    tail = 0;
+    marks[start] = generation;
+    queue[tail++] = start;
+  }
+
+  private void expand(short[] crates, int cell) {
+    for (int dir = 0; dir < 4; dir++) {
+      int next = cell + board.deltas[dir];
+      if (marks[next] != generation && !board.walls[next]
+          && Arrays.binarySearch(crates, (short) next) < 0) {
+        marks[next] = generation;
+        via[next] = (byte) dir;
+        queue[tail++] = next;
+      }
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races several solver configurations on a fixed thread pool and keeps the
+ * first solution that replays correctly. The losers are interrupted, which
+ * the search loops check between expansions, and waited for, so none of them
+ * outlives the solve. When time runs out first, the members' partial lines
+ * are replayed and the one ending closest to the goal by estimate is kept.
+ *
+ * SokoBot only runs the portfolio for the default A_STAR strategy: asking
+ * for any other strategy means that strategy.
+ */
+class PortfolioSolver {
+  private final List<SolverOptions> members;
+  // The bot the portfolio runs for, whose board and solution memory the members share
+  private final SokoBot owner;
+  private volatile SokoBot winner;
+
+  PortfolioSolver(SolverOptions options, SokoBot owner) {
+    this.members = configurations(options);
+    this.owner = owner;
+  }
+
+  /**
+   * A* for the optimal answer, greedy best-first for big open maps, and
+   * breadth-first for small maps where a heuristic costs more than it saves.
+   */
+  static List<SolverOptions> configurations(SolverOptions base) {
+    List<SolverOptions> members = new ArrayList<>();
+
+    SolverOptions aStar = base.copy();
+    aStar.portfolio = false;
+    aStar.strategy = SolverOptions.Strategy.A_STAR;
+    members.add(aStar);
+
+    SolverOptions greedy = base.copy();
+    greedy.portfolio = false;
+    greedy.threads = 1;
+    greedy.strategy = SolverOptions.Strategy.GREEDY;
+    members.add(greedy);
+
+    SolverOptions breadthFirst = base.copy();
+    breadthFirst.portfolio = false;
+    breadthFirst.threads = 1;
+    breadthFirst.strategy = SolverOptions.Strategy.BREADTH_FIRST;
+    breadthFirst.heuristic = SolverOptions.HeuristicType.PUSH_DISTANCE;
+    members.add(breadthFirst);
+
+    return members;
+  }
+
+  /**
+   * Returns the first valid solution. Members share the caller's token, so
+   * cancelling it or reaching its deadline stops the whole race.
+   */
+  SolverResult solve(int width, int height, char[][] mapData, char[][] itemsData, CancellationToken token,
+      SearchMetrics metrics) {
+    Board board = owner.boardFor(width, height, mapData);
+    Expander checker = new Expander(board, members.get(0));
+    Node startNode = checker.initializeStartNode(itemsData);
+
+    // What each member returned, for the best partial line if nobody solves it
+    SolverResult[] results = new SolverResult[members.size()];
+    List<Callable<SolverResult>> tasks = new ArrayList<>();
+    for (SolverOptions member : members) {
+      int index = tasks.size();
+      // Only the A* member reports live metrics; mixing strategies would make them meaningless
+      SearchMetrics memberMetrics = index == 0 ? metrics : new SearchMetrics();
+      tasks.add(() -> {
+        SokoBot bot = new SokoBot(member);
+        bot.share(owner);
+        // Losers are interrupted, which the token also reports as cancelled
+        SolverResult result = bot.solve(width, height, mapData, itemsData, token, memberMetrics);
+        results[index] = result;
+        if (!result.isSolved() || !checker.isSolution(startNode, result.getMoves())) {
+          throw new IllegalStateException("No valid solution from " + member.strategy);
+        }
+        synchronized (this) {
+          if (winner == null) {
+            winner = bot;
+          }
+        }
+        return result;
+      });
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(tasks.size(), runnable -> {
+      Thread thread = new Thread(runnable, "sokobot-portfolio");
+      thread.setDaemon(true);
+      return thread;
+    });
+    boolean interrupted = false;
+    try {
+      return pool.invokeAny(tasks);
+    } catch (ExecutionException ex) {
+      if (!token.isCancelled()) {
+        return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
+      }
+    } catch (InterruptedException ex) {
+      token.cancel();
+      interrupted = true;
+    } finally {
+      pool.shutdownNow();
+      interrupted |= awaitMembers(pool);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    String partial = bestPartial(checker, startNode, results);
+    if (partial != null && checker.isSolution(startNode, partial)) {
+      // A member stopped holding a solution it had not finished improving
+      return SolverResult.stoppedWithSolution(token, partial);
+    }
+    return SolverResult.stopped(token, partial);
+  }
+
+  // Waits for the interrupted members to return; true if this thread was interrupted meanwhile
+  private static boolean awaitMembers(ExecutorService pool) {
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+        // Members poll the token between expansions, so this ends soon
+      }
+      return false;
+    } catch (InterruptedException ex) {
+      return true;
+    }
+  }
+
+  // The legal partial line that leaves the lowest estimate, preferring earlier members on ties
+  private static String bestPartial(Expander checker, Node startNode, SolverResult[] results) {
+    String best = null;
+    int bestEstimate = Heuristic.DEAD;
+    for (SolverResult result : results) {
+      if (result == null) {
+        continue;
+      }
+      short[] crates = checker.replay(startNode, result.getMoves());
+      if (crates == null) {
+        continue;
+      }
+      int estimate = checker.heuristic.estimate(crates);
+      if (best == null || estimate < bestEstimate) {
+        best = result.getMoves();
+        bestEstimate = estimate;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * The member whose solution was returned, for its search statistics.
+   */
+  SokoBot getWinner() {
+    return winner;
+  }
+}
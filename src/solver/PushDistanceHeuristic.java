@@ -0,0 +1,26 @@
+package solver;
+
+/**
+ * Sum of the push distances from each crate to its nearest goal, using the
+ * precomputed {@link DistanceTables}. Several crates may count the same goal.
+ */
+class PushDistanceHeuristic implements Heuristic {
+  private final int[] toNearestGoal;
+
+  PushDistanceHeuristic(Board board) {
+    toNearestGoal = board.distances.toNearestGoal;
+  }
+
+  @Override
+  public int estimate(short[] crates) {
+    int totalDistance = 0;
+    for (short crate : crates) {
+      int distance = toNearestGoal[crate];
+      if (distance == DistanceTables.UNREACHABLE) {
+        return DEAD;
+      }
+      totalDistance += distance;
+    }
+    return totalDistance;
+  }
+}
@@ -0,0 +1,208 @@
+package solver;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Live counters for one solve.
+ *
+ * The search thread bumps plain fields as it goes and copies them into a
+ * volatile snapshot every few thousand expansions, so other threads (the GUI,
+ * a benchmark) can read a recent, consistent view without slowing the search.
+ * Heuristic time is measured on one expansion in SAMPLE_RATE and reported as
+ * a share of the time spent in those expansions.
+ */
+public class SearchMetrics {
+  static final int SAMPLE_RATE = 16;
+  private static final int PUBLISH_INTERVAL = 4096;
+
+  private static final int EXPANDED = 0;
+  private static final int GENERATED = 1;
+  private static final int DUPLICATES = 2;
+  private static final int OPEN = 3;
+  private static final int VISITED = 4;
+  private static final int DEAD_SQUARE = 5;
+  private static final int FROZEN = 6;
+  private static final int CORRAL = 7;
+  private static final int UNMATCHED = 8;
+  private static final int HEURISTIC_NANOS = 9;
+  private static final int SAMPLED_NANOS = 10;
+  private static final int BEST_F = 11;
+  private static final int FIELDS = 12;
+
+  // Written by the search thread only
+  long expanded;
+  long generated;
+  long duplicates;
+  long deadSquarePrunes;
+  long frozenPrunes;
+  long corralPrunes;
+  long unmatchedPrunes;
+  long heuristicNanos;
+  long sampledNanos;
+  private int publishCountdown = PUBLISH_INTERVAL;
+
+  private final long startNanos = System.nanoTime();
+  private volatile long[] snapshot = new long[FIELDS];
+  // Worker metrics a parallel search reports through this one; added while the GUI may be reading
+  private final List<SearchMetrics> parts = new CopyOnWriteArrayList<>();
+
+  public SearchMetrics() {
+    snapshot[BEST_F] = -1;
+  }
+
+  void addPart(SearchMetrics part) {
+    parts.add(part);
+  }
+
+  /**
+   * Counts one expansion; true when it is time to publish.
+   */
+  boolean due() {
+    if (--publishCountdown > 0) {
+      return false;
+    }
+    publishCountdown = PUBLISH_INTERVAL;
+    return true;
+  }
+
+  /**
+   * Makes the counters visible to other threads, along with the search's
+   * open-list and visited-table sizes and the f-value it is working on.
+   */
+  void publish(int openSize, int visitedSize, int bestF) {
+    long[] values = new long[FIELDS];
+    values[EXPANDED] = expanded;
+    values[GENERATED] = generated;
+    values[DUPLICATES] = duplicates;
+    values[OPEN] = openSize;
+    values[VISITED] = visitedSize;
+    values[DEAD_SQUARE] = deadSquarePrunes;
+    values[FROZEN] = frozenPrunes;
+    values[CORRAL] = corralPrunes;
+    values[UNMATCHED] = unmatchedPrunes;
+    values[HEURISTIC_NANOS] = heuristicNanos;
+    values[SAMPLED_NANOS] = sampledNanos;
+    values[BEST_F] = bestF;
+    snapshot = values;
+  }
+
+  private long[] read() {
+    if (parts.isEmpty()) {
+      return snapshot;
+    }
+    long[] total = new long[FIELDS];
+    total[BEST_F] = -1;
+    for (SearchMetrics part : parts) {
+      long[] values = part.snapshot;
+      for (int i = 0; i < FIELDS; i++) {
+        if (i == BEST_F) {
+          // Workers advance unevenly; the lowest f still pending bounds them all
+          if (values[i] >= 0 && (total[i] < 0 || values[i] < total[i])) {
+            total[i] = values[i];
+          }
+        } else if (i == VISITED) {
+          // The workers share one table and each reports its full size
+          total[i] = Math.max(total[i], values[i]);
+        } else {
+          total[i] += values[i];
+        }
+      }
+    }
+    return total;
+  }
+
+  public long getElapsedMillis() {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  public long getNodesExpanded() {
+    return read()[EXPANDED];
+  }
+
+  public long getNodesGenerated() {
+    return read()[GENERATED];
+  }
+
+  public double getExpandedPerSecond() {
+    return perSecond(getNodesExpanded());
+  }
+
+  public double getGeneratedPerSecond() {
+    return perSecond(getNodesGenerated());
+  }
+
+  private double perSecond(long count) {
+    long elapsed = System.nanoTime() - startNanos;
+    return elapsed <= 0 ? 0 : count * 1e9 / elapsed;
+  }
+
+  public long getOpenSize() {
+    return read()[OPEN];
+  }
+
+  public long getVisitedSize() {
+    return read()[VISITED];
+  }
+
+  /**
+   * Successors dropped because their state was already reached at no
+   * greater cost.
+   */
+  public long getDuplicates() {
+    return read()[DUPLICATES];
+  }
+
+  /**
+   * Pushes onto a square no crate can be brought back from.
+   */
+  public long getDeadSquarePrunes() {
+    return read()[DEAD_SQUARE];
+  }
+
+  /**
+   * Pushes that froze a crate off its goal or closed a 2x2 block.
+   */
+  public long getFrozenPrunes() {
+    return read()[FROZEN];
+  }
+
+  /**
+   * Pushes that sealed off a region which can never be solved.
+   */
+  public long getCorralPrunes() {
+    return read()[CORRAL];
+  }
+
+  /**
+   * Pushes the heuristic found no goal assignment for.
+   */
+  public long getUnmatchedPrunes() {
+    return read()[UNMATCHED];
+  }
+
+  /**
+   * Fraction of expansion time spent evaluating the heuristic, 0 to 1.
+   */
+  public double getHeuristicShare() {
+    long[] values = read();
+    return values[SAMPLED_NANOS] == 0 ? 0 : (double) values[HEURISTIC_NANOS] / values[SAMPLED_NANOS];
+  }
+
+  /**
+   * Cost plus estimate of the node last expanded, or -1 before the first
+   * sample.
+   */
+  public long getBestF() {
+    return read()[BEST_F];
+  }
+
+  @Override
+  public String toString() {
+    long[] values = read();
+    return String.format("%.0f/s  open %d  seen %d  dup %d  dead %d/%d/%d/%d  h %.0f%%  f %d",
+        getExpandedPerSecond(), values[OPEN], values[VISITED], values[DUPLICATES],
+        values[DEAD_SQUARE], values[FROZEN], values[CORRAL], values[UNMATCHED],
+        getHeuristicShare() * 100, values[BEST_F]);
+  }
+}
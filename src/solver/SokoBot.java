@@ -1,276 +1,315 @@
 package solver;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Set;
 
-class Node {
-  int playerX, playerY, cost;
-  HashSet<Point> cratePositions;
-  Node parent;
-
-  Node(int playerX, int playerY, HashSet<Point> cratePositions) {
-    this.playerX = playerX;
-    this.playerY = playerY;
-    this.cratePositions = cratePositions;
-    this.parent = null;
-    this.cost = 0;
+public class SokoBot {
+  private final SolverOptions options;
+  private volatile CancellationToken token;
+  private volatile SearchMetrics metrics = new SearchMetrics();
+  private long nodesExpanded;
+  private long nodesGenerated;
+
+  // Kept between solves of the same level, so a re-solve from a later position starts warm
+  private Board board;
+  private char[][] boardMap;
+  private SolutionMemory memory;
+
+  public SokoBot() {
+    this(new SolverOptions());
   }
 
-  @Override
-  public boolean equals(Object o) {
-    if (this == o)
-      return true; // check if same instance
-    if (o == null || getClass() != o.getClass())
-      return false;
-
-    Node node = (Node) o;
-
-    if (playerX != node.playerX)
-      return false;
-    if (playerY != node.playerY)
-      return false;
-
-    // Here we're comparing the crate positions lists.
-    // This assumes the crate positions in both lists are in the same order.
-    return cratePositions.equals(node.cratePositions);
+  public SokoBot(SolverOptions options) {
+    this.options = options;
   }
 
-  @Override
-  public int hashCode() {
-    int result = playerX;
-    result = 31 * result + playerY;
-    result = 31 * result + cratePositions.hashCode();
-    return result;
+  /**
+   * The moves {@link #solve} settles on: a solution, or when there is none
+   * in time a partial line toward the most promising state, or nothing when
+   * the level cannot be solved.
+   */
+  public String solveSokobanPuzzle(int width, int height, char[][] mapData, char[][] itemsData) {
+    return solve(width, height, mapData, itemsData).getMoves();
   }
-}
 
-class Point {
-  int x, y;
-
-  Point(int x, int y) {
-    this.x = x;
-    this.y = y;
-  }
+  /**
+   * Solves the puzzle within SolverOptions.timeLimitMillis, or until
+   * {@link #cancel()} is called from another thread. A level already in
+   * SolverOptions.solutionCache is answered from there without searching.
+   */
+  public SolverResult solve(int width, int height, char[][] mapData, char[][] itemsData) {
+    CancellationToken token = new CancellationToken(options.timeLimitMillis);
+    SearchMetrics metrics = new SearchMetrics();
+    this.token = token;
+    this.metrics = metrics;
+    // A cache hit searches nothing, and must not report the last solve's counts
+    nodesExpanded = 0;
+    nodesGenerated = 0;
+
+    SolutionCache cache = null;
+    if (options.solutionCache != null) {
+      cache = SolutionCache.open(options.solutionCache, options.cacheSymmetries);
+      String moves = cache.lookup(width, height, mapData, itemsData);
+      if (moves != null) {
+        return new SolverResult(SolverResult.Status.SOLVED, moves);
+      }
+    }
 
-  @Override
-  public boolean equals(Object o) {
-    if (this == o)
-      return true;
-    if (o == null || getClass() != o.getClass())
-      return false;
-    Point point = (Point) o;
-    return x == point.x && y == point.y;
+    SolverResult result = solve(width, height, mapData, itemsData, token, metrics);
+    if (cache != null && result.isComplete()) {
+      cache.store(width, height, mapData, itemsData, result.getMoves());
+    }
+    return result;
   }
 
-  @Override
-  public int hashCode() {
-    return 31 * x + y;
+  /**
+   * Stops the solve in progress, which then returns its best partial line.
+   */
+  public void cancel() {
+    CancellationToken current = token;
+    if (current != null) {
+      current.cancel();
+    }
   }
-}
-
-public class SokoBot {
-
-  public String solveSokobanPuzzle(int width, int height, char[][] mapData, char[][] itemsData) {
-
-    PriorityQueue<Node> queue = new PriorityQueue<>(
-        Comparator.comparingInt(node -> node.cost + heuristic(node, mapData)));
-
-    Set<Node> visited = new HashSet<>();
 
-    Node startNode = initializeStartNode(itemsData);
-    startNode.cost = 0;
-    queue.add(startNode);
+  SolverResult solve(int width, int height, char[][] mapData, char[][] itemsData, CancellationToken token,
+      SearchMetrics metrics) {
+    nodesExpanded = 0;
+    nodesGenerated = 0;
+
+    // Any strategy but the default is asked for by name, so it runs on its own
+    if (options.portfolio && options.strategy == SolverOptions.Strategy.A_STAR) {
+      PortfolioSolver portfolio = new PortfolioSolver(options, this);
+      SolverResult result = portfolio.solve(width, height, mapData, itemsData, token, metrics);
+      SokoBot winner = portfolio.getWinner();
+      if (winner != null) {
+        nodesExpanded = winner.nodesExpanded;
+        nodesGenerated = winner.nodesGenerated;
+      }
+      return result;
+    }
 
-    int counter = 0;
-    while (!queue.isEmpty()) {
-      Node currentNode = queue.poll();
-      System.out.println("curr x: " + currentNode.playerX + " curr y: " +
-          currentNode.playerY);
+    Board board = boardFor(width, height, mapData);
+    if (options.threads > 1) {
+      ParallelSearch search = new ParallelSearch(board, options, metrics);
+      SolverResult result = search.solve(itemsData, token);
+      nodesExpanded = search.nodesExpanded.sum();
+      nodesGenerated = search.nodesGenerated.sum();
+      // Null when the shared table outgrew the memory budget
+      return result != null ? result : solveWithIdaStar(board, itemsData, token, metrics);
+    }
 
-      if (isGoalState(currentNode, mapData)) {
-        System.out.println("count: " + counter);
-        return reconstructPath(currentNode);
+    if (options.strategy == SolverOptions.Strategy.IDA_STAR) {
+      return solveWithIdaStar(board, itemsData, token, metrics);
+    }
+    if (options.strategy == SolverOptions.Strategy.ANYTIME) {
+      AnytimeSearch search = new AnytimeSearch(board, options, metrics, memory);
+      SolverResult result = search.solve(itemsData, token);
+      nodesExpanded = search.nodesExpanded;
+      nodesGenerated = search.nodesGenerated;
+      if (result != null) {
+        return result;
       }
+      // Out of memory before any solution; a stopped IDA* hands back the closer of the two partial lines
+      result = solveWithIdaStar(board, itemsData, token, metrics);
+      SolverResult.Status status = result.getStatus();
+      if (status == SolverResult.Status.TIMED_OUT || status == SolverResult.Status.CANCELLED) {
+        return SolverResult.stopped(token, search.closer(result.getMoves()));
+      }
+      return result;
+    }
+    if (options.strategy == SolverOptions.Strategy.BIDIRECTIONAL) {
+      BidirectionalSearch search = new BidirectionalSearch(board, options, metrics);
+      SolverResult result = search.solve(itemsData, token);
+      nodesExpanded = search.nodesExpanded + search.backwardExpanded;
+      nodesGenerated = search.nodesGenerated + search.backwardGenerated;
+      // Null when the two tables outgrew the memory budget
+      return result != null ? result : solveWithIdaStar(board, itemsData, token, metrics);
+    }
 
-      visited.add(currentNode);
+    Expander expander = new Expander(board, options, metrics);
+    SolverTrace trace = new SolverTrace(board, options);
+    List<Node> neighbors = new ArrayList<>(4);
+    expander.prepare(token);
+    Node startNode = expander.initializeStartNode(itemsData);
+    if (memory.isKnown(startNode)) {
+      return new SolverResult(SolverResult.Status.SOLVED, memory.finish(expander.reach, startNode));
+    }
 
-      for (Node neighbor : getNeighbors(currentNode, mapData, itemsData)) {
-        if (!visited.contains(neighbor) || currentNode.cost + 1 < neighbor.cost) {
-          neighbor.cost = currentNode.cost + 1;
-          queue.offer(neighbor);
-          visited.add(neighbor);
-        }
-      }
-      counter++;
+    long nodeBudget = NodeArena.capacity(options, startNode.crates.length);
+    BucketQueue queue = new BucketQueue(options.strategy);
+    // Every state seen so far, with the cheapest way found to reach it
+    NodeArena arena = new NodeArena(startNode.crates.length, options);
+    if (startNode.estimate != Heuristic.DEAD) {
+      queue.add(arena.add(startNode, -1), startNode.cost, startNode.estimate);
     }
+    // Closest to the goal by estimate, what a stopped search hands back
+    int best = -1;
 
-    return "lrlrlrlrlrlrlrlrlrlrlrlrlrrllrrllrrllrlrlrllrlrllrrl";
-  }
+    int counter = 0;
+    if (trace.summary) {
+      trace.message(options.strategy + " " + options.mode + " " + options.heuristic
+          + " h=" + startNode.estimate + " budget=" + nodeBudget + " nodes");
+    }
+    try {
+      while (!queue.isEmpty()) {
+        if (token.isCancelled()) {
+          if (trace.summary) {
+            trace.message("stopped after " + counter + " expansions");
+            trace.dump();
+          }
+          return SolverResult.stopped(token, best < 0 ? "" : expander.reconstructPath(arena.path(best)));
+        }
+        if (arena.size() > nodeBudget) {
+          if (trace.summary) {
+            trace.message("over budget at " + arena.size() + " nodes, switching to IDA*");
+          }
+          break;
+        }
+        int current = queue.poll();
+        if (arena.isClosed(current)) {
+          // Queued again by a cheaper path, which has already been expanded
+          continue;
+        }
+        arena.close(current);
+        Node currentNode = arena.node(current);
+        if (trace.expansions) {
+          trace.expanded(currentNode, queue.size());
+        }
 
-  private int heuristic(Node node, char[][] mapData) {
-    int totalDistance = 0;
-    for (Point crate : node.cratePositions) {
-      int minDistance = Integer.MAX_VALUE;
-      for (int y = 0; y < mapData.length; y++) {
-        for (int x = 0; x < mapData[y].length; x++) {
-          if (mapData[y][x] == '.') {
-            int distance = Math.abs(crate.x - x) + Math.abs(crate.y - y);
-            minDistance = Math.min(minDistance, distance);
+        boolean known = !memory.isEmpty() && memory.isKnown(currentNode);
+        if (known || expander.isGoalState(currentNode)) {
+          if (trace.summary) {
+            trace.message("solved after " + counter + " expansions, cost " + currentNode.cost
+                + (known ? " to a remembered state" : ""));
           }
+          String tail = known ? memory.finish(expander.reach, currentNode) : "";
+          Node path = arena.path(current);
+          memory.remember(expander, path, tail);
+          return new SolverResult(SolverResult.Status.SOLVED, expander.reconstructPath(path) + tail);
+        }
+        if (best < 0 || currentNode.estimate < arena.estimate(best)) {
+          best = current;
+        }
+        if (metrics.due()) {
+          metrics.publish(queue.size(), arena.size(), currentNode.cost + currentNode.estimate);
         }
-      }
-      totalDistance += minDistance;
-    }
-    return totalDistance;
-  }
 
-  public List<Point> initializeGoals(char[][] mapData) {
-    List<Point> goals = new ArrayList<>();
-    for (int y = 0; y < mapData.length; y++) {
-      for (int x = 0; x < mapData[y].length; x++) {
-        if (mapData[y][x] == '.') {
-          goals.add(new Point(x, y));
+        expander.expand(currentNode, neighbors);
+        nodesGenerated += neighbors.size();
+        for (Node neighbor : neighbors) {
+          int seen = arena.find(neighbor);
+          if (seen < 0) {
+            queue.add(arena.add(neighbor, current), neighbor.cost, neighbor.estimate);
+          } else if (neighbor.cost < arena.cost(seen)) {
+            arena.update(seen, neighbor, current);
+            queue.add(seen, neighbor.cost, neighbor.estimate);
+          } else {
+            metrics.duplicates++;
+          }
         }
+        counter++;
       }
-    }
-    return goals;
-  }
-
-  public Node initializeStartNode(char[][] itemsData) {
-    int playerX = -1, playerY = -1;
-    HashSet<Point> cratePositions = new HashSet<>();
-
-    for (int y = 0; y < itemsData.length; y++) {
-      for (int x = 0; x < itemsData[y].length; x++) {
-        if (itemsData[y][x] == '@') {
-          playerX = x;
-          playerY = y;
-        } else if (itemsData[y][x] == '$') {
-          cratePositions.add(new Point(x, y));
+      if (queue.isEmpty()) {
+        if (trace.summary) {
+          trace.message("exhausted after " + counter + " expansions");
+          trace.dump();
         }
+        return new SolverResult(SolverResult.Status.UNSOLVABLE, null);
       }
-    }
-    return new Node(playerX, playerY, cratePositions);
-  }
-
-  public boolean isGoalState(Node node, char[][] mapData) {
-    // Check if all crates are on target positions
-
-    for (Point crate : node.cratePositions) {
-      int crateX = crate.x;
-      int crateY = crate.y;
-
-      // If the crate is not on a target position, it's not a goal state
-      if (mapData[crateY][crateX] != '.') {
-        return false;
+    } catch (OutOfMemoryError ex) {
+      // The budget estimate was too generous for this heap; fall through to IDA*
+      if (trace.summary) {
+        trace.message("out of memory at " + arena.size() + " nodes, switching to IDA*");
       }
+    } catch (UncheckedIOException ex) {
+      // No room left for DISK storage
+      if (trace.summary) {
+        trace.message("cannot spill at " + arena.size() + " nodes (" + ex.getMessage() + "), switching to IDA*");
+      }
+    } finally {
+      nodesExpanded = counter;
+      int last = queue.peek();
+      metrics.publish(queue.size(), arena.size(), last < 0 ? -1 : arena.cost(last) + arena.estimate(last));
+      // Drop the search space right away rather than whenever this SokoBot is collected
+      queue.clear();
+      arena.clear();
     }
 
-    // All crates are on target positions, it's a goal state
-    return true;
+    // Over the memory budget: start over with a search whose memory use is fixed
+    return solveWithIdaStar(board, itemsData, token, metrics);
   }
 
-  private boolean isInCorner(Point crate, char[][] mapData) {
-    int x = crate.x;
-    int y = crate.y;
-    if (mapData[y][x] == '.') {
-      return false; // It's a goal, so not a deadlock
-    }
-    if ((x > 0 && y > 0 && mapData[y - 1][x] == '#' && mapData[y][x - 1] == '#') ||
-        (x > 0 && y < mapData.length - 1 && mapData[y + 1][x] == '#' && mapData[y][x - 1] == '#') ||
-        (x < mapData[0].length - 1 && y > 0 && mapData[y - 1][x] == '#' && mapData[y][x + 1] == '#') ||
-        (x < mapData[0].length - 1 && y < mapData.length - 1 && mapData[y + 1][x] == '#' && mapData[y][x + 1] == '#')) {
-      return true;
+  /**
+   * Does the per-level analysis ahead of time: distance tables, and the
+   * pattern database when SolverOptions.heuristic asks for one, which is
+   * saved to SolverOptions.patternDirectory if set.
+   */
+  public void prepare(int width, int height, char[][] mapData) {
+    Board board = boardFor(width, height, mapData);
+    if (options.heuristic == SolverOptions.HeuristicType.PATTERN_DATABASE) {
+      board.patterns(options.patternSize, options.patternDirectory, true);
     }
-    return false;
   }
 
-  public String reconstructPath(Node node) {
-    // Reconstruct the path from the start node to the current node
-    StringBuilder path = new StringBuilder();
-    while (node.parent != null) {
-      if (node.playerX < node.parent.playerX) {
-        path.insert(0, 'l');
-      } else if (node.playerX > node.parent.playerX) {
-        path.insert(0, 'r');
-      } else if (node.playerY < node.parent.playerY) {
-        path.insert(0, 'u');
-      } else if (node.playerY > node.parent.playerY) {
-        path.insert(0, 'd');
+  /**
+   * The board for this level, reused along with what earlier solves learned
+   * when the walls and goals are unchanged.
+   */
+  Board boardFor(int width, int height, char[][] mapData) {
+    if (board == null || board.width != width || board.height != height
+        || !Arrays.deepEquals(boardMap, mapData)) {
+      board = new Board(width, height, mapData);
+      boardMap = new char[mapData.length][];
+      for (int i = 0; i < mapData.length; i++) {
+        boardMap[i] = mapData[i].clone();
       }
-      node = node.parent;
+      memory = new SolutionMemory();
     }
-    return path.toString();
+    return board;
   }
 
-  public List<Node> getNeighbors(Node currentNode, char[][] mapData, char[][] itemsData) {
-    List<Node> neighbors = new ArrayList<>();
-    int playerX = currentNode.playerX;
-    int playerY = currentNode.playerY;
-
-    // Possible movements: up, down, left, right
-    int[] dX = { 0, 0, -1, 1 };
-    int[] dY = { -1, 1, 0, 0 };
-
-    for (int i = 0; i < 4; i++) {
-      int newX = playerX + dX[i];
-      int newY = playerY + dY[i];
-
-      // Check if the new position is within bounds and is not a wall
-      if (newX >= 0 && newX < mapData[0].length && newY >= 0 && newY < mapData.length &&
-          mapData[newY][newX] != '#') {
-
-        HashSet<Point> newCratePositions = new HashSet<>(currentNode.cratePositions);
-        boolean isCrateMoved = false;
-        List<Point> cratesList = new ArrayList<>(newCratePositions);
-
-        for (Point crate : cratesList) {
-          if (isInCorner(crate, mapData)) {
-            return neighbors; // Exit early as this is an invalid state.
-          }
-          if (crate.x == newX && crate.y == newY) {
-            int newCrateX = crate.x + dX[i];
-            int newCrateY = crate.y + dY[i];
-            Point movedCrate = new Point(newCrateX, newCrateY);
-
-            if (isInCorner(movedCrate, mapData)) {
-              continue; // This move leads to a deadlock, so skip this move, but keep evaluating other
-                        // moves.
-            }
+  /**
+   * Starts this bot from owner's board and remembered solutions, so that a
+   * portfolio member neither rebuilds the board nor misses what earlier
+   * solves of the level found.
+   */
+  void share(SokoBot owner) {
+    board = owner.board;
+    boardMap = owner.boardMap;
+    memory = owner.memory;
+  }
 
-            if (newCrateX >= 0 && newCrateX < mapData[0].length &&
-                newCrateY >= 0 && newCrateY < mapData.length &&
-                mapData[newCrateY][newCrateX] != '#' &&
-                !crateCollision(newCrateX, newCrateY, newCratePositions)) {
+  private SolverResult solveWithIdaStar(Board board, char[][] itemsData, CancellationToken token,
+      SearchMetrics metrics) {
+    IdaStarSearch search = new IdaStarSearch(board, options, metrics);
+    SolverResult result = search.solve(itemsData, token);
+    nodesExpanded += search.nodesExpanded;
+    nodesGenerated += search.nodesGenerated;
+    return result;
+  }
 
-              newCratePositions.remove(crate);
-              newCratePositions.add(new Point(newCrateX, newCrateY));
-              isCrateMoved = true;
-            } else {
-              // Unable to move crate, skip this neighbor
-              isCrateMoved = false;
-              break;
-            }
-          }
-        }
+  /**
+   * Live counters for the solve in progress, or the last one. Safe to read
+   * from any thread.
+   */
+  public SearchMetrics getMetrics() {
+    return metrics;
+  }
 
-        // Add neighbor node if valid
-        if (isCrateMoved || !crateCollision(newX, newY, newCratePositions)) {
-          Node neighborNode = new Node(newX, newY, newCratePositions);
-          neighborNode.parent = currentNode;
-          neighborNode.cost = currentNode.cost + 1;
-          neighbors.add(neighborNode);
-        }
-      }
-    }
-    return neighbors;
+  /**
+   * Nodes taken off the open list during the last solve.
+   */
+  public long getNodesExpanded() {
+    return nodesExpanded;
   }
 
-  private boolean crateCollision(int x, int y, HashSet<Point> cratePositions) {
-    return cratePositions.contains(new Point(x, y));
+  /**
+   * Successors produced during the last solve, before duplicate detection.
+   */
+  public long getNodesGenerated() {
+    return nodesGenerated;
   }
 }
@@ -0,0 +1,367 @@
+package solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Solutions found earlier, kept in a small binary file and keyed by a
+ * fingerprint of the level.
+ *
+ * The fingerprint covers the walls, goals, crates and player with blank
+ * border rows and columns trimmed, so padding and trailing spaces do not
+ * matter. With symmetries on, the level is also rotated and mirrored into
+ * whichever of its 8 orientations sorts first. Solutions are stored in that
+ * orientation and turned back on the way out, so a mirrored copy of a level
+ * is a hit too. Every hit is replayed before it is returned, so a stale file
+ * or a hash collision costs a search, never a wrong answer.
+ *
+ * File format: "SKSC", a version int, then per solution the fingerprint
+ * (long), the move count (int) and the moves packed four to a byte. A file
+ * with any other header is left untouched and the cache stays unused.
+ */
+public class SolutionCache {
+  private static final int MAGIC = 0x534b5343;
+  private static final int VERSION = 1;
+  private static final Map<File, SolutionCache> OPEN = new HashMap<>();
+
+  private final File file;
+  private final boolean symmetries;
+  private final Map<Long, String> solutions = new HashMap<>();
+  // False when the file is not one this class wrote, which is then neither read nor written
+  private boolean usable = true;
+
+  private SolutionCache(File file, boolean symmetries) {
+    this.file = file;
+    this.symmetries = symmetries;
+    load();
+  }
+
+  /**
+   * The cache backed by file, shared by every solver in this process that
+   * names the same file.
+   */
+  public static synchronized SolutionCache open(File file, boolean symmetries) {
+    File key = file.getAbsoluteFile();
+    SolutionCache cache = OPEN.get(key);
+    if (cache == null || cache.symmetries != symmetries) {
+      cache = new SolutionCache(key, symmetries);
+      OPEN.put(key, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * A verified solution for this level, or null.
+   */
+  public String lookup(int width, int height, char[][] mapData, char[][] itemsData) {
+    Level level = new Level(width, height, mapData, itemsData);
+    String stored;
+    synchronized (this) {
+      stored = solutions.get(level.fingerprint);
+    }
+    if (stored == null) {
+      return null;
+    }
+    String moves = level.fromCanonical(stored);
+    return level.isSolution(moves) ? moves : null;
+  }
+
+  public void store(int width, int height, char[][] mapData, char[][] itemsData, String moves) {
+    Level level = new Level(width, height, mapData, itemsData);
+    String canonical = level.toCanonical(moves);
+    synchronized (this) {
+      if (!usable) {
+        return;
+      }
+      String known = solutions.get(level.fingerprint);
+      if (known != null && known.length() <= canonical.length()) {
+        return;
+      }
+      solutions.put(level.fingerprint, canonical);
+      append(level.fingerprint, canonical);
+    }
+  }
+
+  /**
+   * Reads every complete record. A record cut short by a crash is cut off,
+   * so that appends land where the next load can read them. A file whose
+   * header does not match is someone else's: it is left alone, and the cache
+   * is not used.
+   */
+  private void load() {
+    if (!file.isFile() || file.length() == 0) {
+      return;
+    }
+    long length = file.length();
+    long good = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        refuse("not a version " + VERSION + " solution cache");
+        return;
+      }
+      good = 8;
+      while (true) {
+        long fingerprint = in.readLong();
+        int count = in.readInt();
+        int bytes = (count + 3) / 4;
+        if (count < 0 || bytes > length - good - 12) {
+          break;
+        }
+        byte[] packed = new byte[bytes];
+        in.readFully(packed);
+        // Later records are improvements on earlier ones
+        solutions.put(fingerprint, unpack(packed, count));
+        good += 12 + bytes;
+      }
+    } catch (EOFException ex) {
+      // End of file, or a record cut short by a crash; keep what was read
+      if (good == 0) {
+        refuse("too short for a solution cache");
+        return;
+      }
+    } catch (IOException ex) {
+      ex.printStackTrace(System.err);
+      usable = false;
+      return;
+    }
+    if (good < length) {
+      truncate(good);
+    }
+  }
+
+  private void refuse(String reason) {
+    System.err.println(file + ": " + reason + ", not caching solutions");
+    usable = false;
+  }
+
+  private void truncate(long length) {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(length);
+    } catch (IOException ex) {
+      ex.printStackTrace(System.err);
+    }
+  }
+
+  private void append(long fingerprint, String moves) {
+    boolean fresh = !file.isFile() || file.length() == 0;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+      if (fresh) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+      }
+      out.writeLong(fingerprint);
+      out.writeInt(moves.length());
+      out.write(pack(moves));
+    } catch (IOException ex) {
+      ex.printStackTrace(System.err);
+    }
+  }
+
+  private static byte[] pack(String moves) {
+    byte[] packed = new byte[(moves.length() + 3) / 4];
+    for (int i = 0; i < moves.length(); i++) {
+      packed[i / 4] |= Board.direction(moves.charAt(i)) << (i % 4 * 2);
+    }
+    return packed;
+  }
+
+  private static String unpack(byte[] packed, int length) {
+    char[] moves = new char[length];
+    for (int i = 0; i < length; i++) {
+      moves[i] = Board.MOVES[(packed[i / 4] >> (i % 4 * 2)) & 3];
+    }
+    return new String(moves);
+  }
+
+  /**
+   * One level, trimmed to its content, with the orientation that maps it
+   * onto its canonical form. Orientation bits: 1 mirrors x, 2 mirrors y,
+   * 4 then swaps the axes.
+   */
+  private class Level {
+    private final char[][] tiles;
+    private final int rows, columns;
+    private int orientation = 0;
+    private long fingerprint;
+
+    Level(int width, int height, char[][] mapData, char[][] itemsData) {
+      int top = height, bottom = -1, left = width, right = -1;
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          if (tile(mapData, itemsData, x, y) != ' ') {
+            top = Math.min(top, y);
+            bottom = Math.max(bottom, y);
+            left = Math.min(left, x);
+            right = Math.max(right, x);
+          }
+        }
+      }
+      rows = Math.max(0, bottom - top + 1);
+      columns = Math.max(0, right - left + 1);
+      tiles = new char[rows][columns];
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < columns; x++) {
+          tiles[y][x] = tile(mapData, itemsData, x + left, y + top);
+        }
+      }
+
+      String best = null;
+      for (int candidate = 0; candidate < (symmetries ? 8 : 1); candidate++) {
+        String text = render(candidate);
+        if (best == null || text.compareTo(best) < 0) {
+          best = text;
+          orientation = candidate;
+        }
+      }
+      fingerprint = fnv(best);
+    }
+
+    private char tile(char[][] mapData, char[][] itemsData, int x, int y) {
+      char map = y < mapData.length && x < mapData[y].length ? mapData[y][x] : ' ';
+      char item = y < itemsData.length && x < itemsData[y].length ? itemsData[y][x] : ' ';
+      boolean goal = map == '.';
+      if (map == '#') {
+        return '#';
+      } else if (item == '$') {
+        return goal ? '*' : '$';
+      } else if (item == '@') {
+        return goal ? '+' : '@';
+      }
+      return goal ? '.' : ' ';
+    }
+
+    // The level as text in the given orientation, dimensions first
+    private String render(int candidate) {
+      boolean swap = (candidate & 4) != 0;
+      int outRows = swap ? columns : rows;
+      int outColumns = swap ? rows : columns;
+      StringBuilder text = new StringBuilder(outRows * (outColumns + 1) + 8);
+      text.append(outColumns).append('x').append(outRows).append(':');
+      for (int y = 0; y < outRows; y++) {
+        for (int x = 0; x < outColumns; x++) {
+          int sourceX = swap ? y : x;
+          int sourceY = swap ? x : y;
+          if ((candidate & 1) != 0) {
+            sourceX = columns - 1 - sourceX;
+          }
+          if ((candidate & 2) != 0) {
+            sourceY = rows - 1 - sourceY;
+          }
+          text.append(tiles[sourceY][sourceX]);
+        }
+        text.append('/');
+      }
+      return text.toString();
+    }
+
+    String toCanonical(String moves) {
+      return turn(moves, false);
+    }
+
+    String fromCanonical(String moves) {
+      return turn(moves, true);
+    }
+
+    private String turn(String moves, boolean inverse) {
+      char[] mapped = new char[moves.length()];
+      for (int i = 0; i < mapped.length; i++) {
+        int dir = Board.direction(moves.charAt(i));
+        int dx = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+        int dy = dir == 0 ? -1 : dir == 1 ? 1 : 0;
+        if (inverse && (orientation & 4) != 0) {
+          int t = dx;
+          dx = dy;
+          dy = t;
+        }
+        if ((orientation & 1) != 0) {
+          dx = -dx;
+        }
+        if ((orientation & 2) != 0) {
+          dy = -dy;
+        }
+        if (!inverse && (orientation & 4) != 0) {
+          int t = dx;
+          dx = dy;
+          dy = t;
+        }
+        mapped[i] = dx < 0 ? 'l' : dx > 0 ? 'r' : dy < 0 ? 'u' : 'd';
+      }
+      return new String(mapped);
+    }
+
+    /**
+     * Replays moves on the trimmed level.
+     */
+    boolean isSolution(String moves) {
+      char[][] board = new char[rows][];
+      int playerX = -1, playerY = -1;
+      for (int y = 0; y < rows; y++) {
+        board[y] = tiles[y].clone();
+        for (int x = 0; x < columns; x++) {
+          if (board[y][x] == '@' || board[y][x] == '+') {
+            playerX = x;
+            playerY = y;
+            board[y][x] = board[y][x] == '+' ? '.' : ' ';
+          }
+        }
+      }
+      if (playerX < 0) {
+        return false;
+      }
+      for (int i = 0; i < moves.length(); i++) {
+        int dir = Board.direction(moves.charAt(i));
+        int dx = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+        int dy = dir == 0 ? -1 : dir == 1 ? 1 : 0;
+        int nextX = playerX + dx, nextY = playerY + dy;
+        if (isBlocked(board, nextX, nextY)) {
+          return false;
+        }
+        if (hasCrate(board, nextX, nextY)) {
+          int targetX = nextX + dx, targetY = nextY + dy;
+          if (isBlocked(board, targetX, targetY) || hasCrate(board, targetX, targetY)) {
+            return false;
+          }
+          board[targetY][targetX] = board[targetY][targetX] == '.' ? '*' : '$';
+          board[nextY][nextX] = board[nextY][nextX] == '*' ? '.' : ' ';
+        }
+        playerX = nextX;
+        playerY = nextY;
+      }
+      for (char[] row : board) {
+        for (char tile : row) {
+          if (tile == '$') {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private boolean isBlocked(char[][] board, int x, int y) {
+      return y < 0 || y >= rows || x < 0 || x >= columns || board[y][x] == '#';
+    }
+
+    private boolean hasCrate(char[][] board, int x, int y) {
+      return board[y][x] == '$' || board[y][x] == '*';
+    }
+  }
+
+  private static long fnv(String text) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
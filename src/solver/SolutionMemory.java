@@ -0,0 +1,85 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * States on solutions already found for one level, each with the moves that
+ * finish the level from it. A later search from anywhere on the same level
+ * can stop as soon as it reaches one of them instead of reaching a goal.
+ * Portfolio members share one memory, so it is safe to use from several
+ * threads.
+ */
+class SolutionMemory {
+  // Moves from the state's player cell to the end, as an offset into a shared solution string
+  private static class Continuation {
+    final String moves;
+    final int from;
+    final int player;
+
+    Continuation(String moves, int from, int player) {
+      this.moves = moves;
+      this.from = from;
+      this.player = player;
+    }
+  }
+
+  private final Map<Node, Continuation> continuations = new ConcurrentHashMap<>();
+
+  boolean isEmpty() {
+    return continuations.isEmpty();
+  }
+
+  boolean isKnown(Node node) {
+    return continuations.containsKey(node);
+  }
+
+  /**
+   * The moves that solve the level from node, starting with the walk from
+   * where the player stands to where the stored solution had it. Null when
+   * node is not known.
+   */
+  String finish(PlayerReach reach, Node node) {
+    Continuation continuation = continuations.get(node);
+    if (continuation == null) {
+      return null;
+    }
+    String walk = reach.stepWalk(node.crates, node.player, continuation.player);
+    return walk + continuation.moves.substring(continuation.from);
+  }
+
+  /**
+   * Remembers every state on the path to last, given the moves that solve
+   * the level from last.
+   */
+  void remember(Expander expander, Node last, String tail) {
+    List<Node> chain = new ArrayList<>();
+    for (Node node = last; node != null; node = node.parent) {
+      chain.add(node);
+    }
+
+    StringBuilder path = new StringBuilder();
+    int[] offsets = new int[chain.size()];
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      Node step = chain.get(i);
+      if (step.parent != null) {
+        expander.appendStep(path, step);
+      }
+      offsets[i] = path.length();
+    }
+    String moves = path.append(tail).toString();
+
+    for (int i = 0; i < chain.size(); i++) {
+      Node node = chain.get(i);
+      // The first solution found through a state keeps it
+      continuations.putIfAbsent(key(node), new Continuation(moves, offsets[i], node.player));
+    }
+  }
+
+  // A copy without the parent chain, so the memory does not pin the search tree
+  private static Node key(Node node) {
+    return new Node(node.crates, node.player, node.region, node.hash);
+  }
+}
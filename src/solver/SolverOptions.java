@@ -0,0 +1,125 @@
+package solver;
+
+import java.io.File;
+
+/**
+ * Tuning knobs for {@link SokoBot}. The defaults are what the GUI uses.
+ */
+public class SolverOptions {
+  public enum SearchMode {
+    // One node per player step, the original formulation
+    MOVES,
+    // One node per crate push, with walking folded into a canonical player region
+    PUSHES
+  }
+
+  public enum HeuristicType {
+    // Grid distance from each crate to its nearest goal
+    MANHATTAN,
+    // Precomputed push distance from each crate to its nearest goal
+    PUSH_DISTANCE,
+    // Minimum-cost assignment of crates to distinct goals over push distances
+    MATCHING,
+    // The matching or a sum of exact costs for disjoint groups of patternSize crates, whichever is larger
+    PATTERN_DATABASE
+  }
+
+  public enum Strategy {
+    // Cost so far plus heuristic; optimal in pushes (or moves) with an admissible heuristic
+    A_STAR,
+    // Heuristic only; finds some solution quickly on open maps
+    GREEDY,
+    // Cost so far only; cheapest per node on tiny maps
+    BREADTH_FIRST,
+    // Iterative-deepening A*: memory stays within memoryBudgetMb however long it runs
+    IDA_STAR,
+    // Forward A* over pushes meeting a backward breadth-first search over pulls from the goal
+    BIDIRECTIONAL,
+    // Weighted A* for a quick first solution, then lower weights to improve it until time runs out
+    ANYTIME
+  }
+
+  public enum TraceLevel {
+    OFF,
+    // Start, finish and fallbacks
+    SUMMARY,
+    // Also every node taken off the open list
+    EXPANSIONS
+  }
+
+  public enum StateStorage {
+    // Java heap; fastest while the search fits comfortably
+    HEAP,
+    // Direct buffers outside the heap, so the garbage collector never scans them
+    OFF_HEAP,
+    // Memory-mapped files in spillDirectory, paged out by the OS when memory runs short
+    DISK
+  }
+
+  public SearchMode mode = SearchMode.PUSHES;
+  public HeuristicType heuristic = HeuristicType.MATCHING;
+  public Strategy strategy = Strategy.A_STAR;
+  // Entries in the memo of local deadlock verdicts, rounded down to a power of two
+  public int deadlockCacheSize = 1 << 16;
+  // Worker threads; more than one switches to the hash-distributed parallel search
+  public int threads = 1;
+  // Give up and return the best partial line after this long; 0 means no limit
+  public long timeLimitMillis = 0;
+  // Heap the search may fill before A* hands over to IDA*; 0 means half the maximum heap
+  public int memoryBudgetMb = 0;
+  // Where A*, greedy and breadth-first search keep the states they reach
+  public StateStorage stateStorage = StateStorage.HEAP;
+  // Most states those searches keep before handing over to IDA*; 0 means as many as memoryBudgetMb
+  // allows on the heap, and no limit off it
+  public long maxStates = 0;
+  // Directory for DISK storage files, which are deleted as soon as they are mapped; null means java.io.tmpdir
+  public File spillDirectory = null;
+  // Race several strategies and keep the first valid solution; only worth it with spare cores, and
+  // only used with the default A_STAR strategy
+  public boolean portfolio = Runtime.getRuntime().availableProcessors() > 1;
+  // Crates per pattern for PATTERN_DATABASE, 1 to 4; tables grow with the live cell count to this power
+  public int patternSize = 2;
+  // Where pattern tables are kept between runs; null builds them in memory for each board
+  public File patternDirectory = null;
+  // Build a missing pattern table at the start of the solve; when false, a board without a saved
+  // table is searched with MATCHING instead
+  public boolean buildPatterns = true;
+  // File of earlier solutions to consult before searching and add to after; null disables it
+  public File solutionCache = null;
+  // Let the cache match rotated and mirrored copies of a level
+  public boolean cacheSymmetries = true;
+  // Debug output on standard error; costs nothing while OFF
+  public TraceLevel traceLevel = TraceLevel.OFF;
+  // Keep only the last this many trace events and print them if the search stops unsolved; 0 prints as it goes
+  public int traceBufferSize = 0;
+
+  long memoryBudgetBytes() {
+    if (memoryBudgetMb > 0) {
+      return memoryBudgetMb * 1024L * 1024L;
+    }
+    return Runtime.getRuntime().maxMemory() / 2;
+  }
+
+  public SolverOptions copy() {
+    SolverOptions copy = new SolverOptions();
+    copy.mode = mode;
+    copy.heuristic = heuristic;
+    copy.strategy = strategy;
+    copy.deadlockCacheSize = deadlockCacheSize;
+    copy.threads = threads;
+    copy.portfolio = portfolio;
+    copy.timeLimitMillis = timeLimitMillis;
+    copy.memoryBudgetMb = memoryBudgetMb;
+    copy.stateStorage = stateStorage;
+    copy.maxStates = maxStates;
+    copy.spillDirectory = spillDirectory;
+    copy.patternSize = patternSize;
+    copy.patternDirectory = patternDirectory;
+    copy.buildPatterns = buildPatterns;
+    copy.solutionCache = solutionCache;
+    copy.cacheSymmetries = cacheSymmetries;
+    copy.traceLevel = traceLevel;
+    copy.traceBufferSize = traceBufferSize;
+    return copy;
+  }
+}
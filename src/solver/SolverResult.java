@@ -0,0 +1,67 @@
+package solver;
+
+/**
+ * Outcome of a solve: whether it finished, and the moves to play.
+ */
+public class SolverResult {
+  public enum Status {
+    // The moves solve the puzzle
+    SOLVED,
+    // The search space was exhausted; no solution exists
+    UNSOLVABLE,
+    // The time limit ran out; the moves are the best solution found, or lead toward the most promising state seen
+    TIMED_OUT,
+    // The search was cancelled; the moves are the best solution found, or lead toward the most promising state seen
+    CANCELLED
+  }
+
+  private final Status status;
+  private final String moves;
+  private final boolean complete;
+
+  SolverResult(Status status, String moves) {
+    this(status, moves, status == Status.SOLVED);
+  }
+
+  private SolverResult(Status status, String moves, boolean complete) {
+    this.status = status;
+    this.moves = moves == null ? "" : moves;
+    this.complete = complete;
+  }
+
+  static SolverResult stopped(CancellationToken token, String partialMoves) {
+    return new SolverResult(token.isExpired() ? Status.TIMED_OUT : Status.CANCELLED, partialMoves);
+  }
+
+  /**
+   * A search stopped before it finished, holding a solution it had not yet
+   * shown to be its last word.
+   */
+  static SolverResult stoppedWithSolution(CancellationToken token, String moves) {
+    return new SolverResult(token.isExpired() ? Status.TIMED_OUT : Status.CANCELLED, moves, true);
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public boolean isSolved() {
+    return status == Status.SOLVED;
+  }
+
+  /**
+   * Whether the moves solve the puzzle: always when solved, and also when a
+   * search that had found a solution was stopped before finishing.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * The full solution when complete, otherwise a best-effort partial line of
+   * play (possibly empty).
+   */
+  public String getMoves() {
+    return moves;
+  }
+}
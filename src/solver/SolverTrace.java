@@ -0,0 +1,87 @@
+package solver;
+
+import java.io.PrintStream;
+
+/**
+ * Debug trace of what a search is doing, off unless SolverOptions.traceLevel
+ * asks for it. Search loops test the level flags before building an
+ * event, so a disabled trace costs one field read per expansion.
+ *
+ * With traceBufferSize set, events go into a ring buffer that keeps only the
+ * most recent ones and is dumped when the search stops without a solution;
+ * otherwise they are printed as they happen.
+ */
+class SolverTrace {
+  final boolean summary;
+  final boolean expansions;
+
+  private final Board board;
+  private final PrintStream out;
+
+  // One slot per event; a slot holds either a message or an expansion
+  private final String[] messages;
+  private final int[] players, costs, estimates, openSizes;
+  private long next = 0;
+
+  SolverTrace(Board board, SolverOptions options) {
+    this.board = board;
+    this.out = System.err;
+    this.summary = options.traceLevel.compareTo(SolverOptions.TraceLevel.SUMMARY) >= 0;
+    this.expansions = options.traceLevel.compareTo(SolverOptions.TraceLevel.EXPANSIONS) >= 0;
+    int slots = summary ? Math.max(0, options.traceBufferSize) : 0;
+    this.messages = new String[slots];
+    this.players = new int[slots];
+    this.costs = new int[slots];
+    this.estimates = new int[slots];
+    this.openSizes = new int[slots];
+  }
+
+  void expanded(Node node, int openSize) {
+    if (messages.length == 0) {
+      print(next++, null, node.player, node.cost, node.estimate, openSize);
+      return;
+    }
+    int slot = (int) (next % messages.length);
+    messages[slot] = null;
+    players[slot] = node.player;
+    costs[slot] = node.cost;
+    estimates[slot] = node.estimate;
+    openSizes[slot] = openSize;
+    next++;
+  }
+
+  void message(String message) {
+    if (messages.length == 0) {
+      print(next++, message, 0, 0, 0, 0);
+      return;
+    }
+    int slot = (int) (next % messages.length);
+    messages[slot] = message;
+    next++;
+  }
+
+  /**
+   * Prints the buffered events, oldest first, and empties the buffer.
+   */
+  void dump() {
+    if (messages.length == 0 || next == 0) {
+      return;
+    }
+    long first = Math.max(0, next - messages.length);
+    out.println("-- last " + (next - first) + " of " + next + " trace events --");
+    for (long serial = first; serial < next; serial++) {
+      int slot = (int) (serial % messages.length);
+      print(serial, messages[slot], players[slot], costs[slot], estimates[slot], openSizes[slot]);
+    }
+    next = 0;
+  }
+
+  private void print(long serial, String message, int player, int cost, int estimate, int openSize) {
+    if (message != null) {
+      out.println(serial + " " + message);
+    } else {
+      out.println(serial + " expand x=" + board.x(player) + " y=" + board.y(player) + " g=" + cost
+          + " h=" + estimate + " open=" + openSize);
+    }
+  }
+}